@@ -0,0 +1,56 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Exception thrown when one or more invocations of a broadcast have failed.
+ * The first error is the cause of the exception, and the rest of them are
+ * added as suppressed exceptions.
+ *
+ * @see ExtensionManager#broadcast
+ */
+public class BroadcastException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Object> results;
+    private final transient List<Throwable> errors;
+
+
+    public BroadcastException(List<?> results, List<Throwable> errors) {
+        super(
+            errors.size() + " extension invocation(s) failed; first error was: " + errors.get(0),
+            errors.get(0)
+        );
+        // results may contain null values
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.errors = List.copyOf(errors);
+        errors.stream().skip(1).forEach(this::addSuppressed);
+    }
+
+
+    /**
+     * @return The results of the successful invocations that were completed,
+     * in priority order of their extensions
+     */
+    public List<Object> results() {
+        return results;
+    }
+
+
+    /**
+     * @return The errors of the failed invocations, in priority order of
+     * their extensions
+     */
+    public List<Throwable> errors() {
+        return errors;
+    }
+
+}
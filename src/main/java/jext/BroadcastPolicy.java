@@ -0,0 +1,24 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+/**
+ * The different strategies to handle failures when invoking every extension
+ * of an extension point using {@link ExtensionManager#broadcast}.
+ */
+public enum BroadcastPolicy {
+
+    /**
+     * Fail as soon as any invocation fails, without waiting for the rest of
+     * them; invocations not started yet are cancelled
+     */
+    FAIL_FAST,
+
+    /**
+     * Wait for every invocation, and then fail if any of them failed,
+     * reporting every error along with the successful results
+     */
+    COLLECT_ERRORS
+}
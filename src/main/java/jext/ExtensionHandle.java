@@ -0,0 +1,113 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import jext.internal.ExtensionDescriptor;
+
+
+/**
+ * Handle of the extension with highest priority for an extension point,
+ * obtained once using {@link ExtensionManager#getExtensionHandle(Class)} and
+ * meant to be kept by frequently invoked code.
+ * <p>
+ * The extension is selected the first time {@link #get()} is invoked, and
+ * reused until the extensions of the manager change (for example, when the
+ * extension point is invalidated or a plugin is deployed), in which case it
+ * is selected again. The scope of the extension is respected: for
+ * {@link ExtensionScope#GLOBAL} and {@link ExtensionScope#SESSION} extensions
+ * the same instance is returned by every invocation, which costs about the
+ * same as reading a field; for {@link ExtensionScope#LOCAL} extensions a new
+ * instance is created each time, and for {@link ExtensionScope#THREAD}
+ * extensions the instance of the invoking thread is returned.
+ * <p>
+ * Extensions provided by external loaders are not known in advance, so if
+ * any {@link ExtensionLoader} is present each invocation is equivalent to
+ * {@link ExtensionManager#getExtension(Class, ExtensionQuery)}.
+ * <p>
+ * Handles are thread-safe.
+ *
+ * @see ExtensionListHandle
+ */
+public final class ExtensionHandle<T> implements Supplier<Optional<T>> {
+
+    private final ExtensionManager extensionManager;
+    private final Class<T> extensionPoint;
+    private final ExtensionQuery query;
+    private volatile Binding<T> binding;
+
+
+    ExtensionHandle(ExtensionManager extensionManager, Class<T> extensionPoint, ExtensionQuery query) {
+        this.extensionManager = extensionManager;
+        this.extensionPoint = extensionPoint;
+        this.query = query;
+    }
+
+
+    public Class<T> extensionPoint() {
+        return extensionPoint;
+    }
+
+
+    /**
+     * @return An optional object either empty or wrapping the current
+     * instance of the extension with highest priority
+     */
+    @Override
+    public Optional<T> get() {
+        if (!extensionManager.hasStableExtensions()) {
+            return extensionManager.getExtension(extensionPoint, query);
+        }
+        Binding<T> current = binding;
+        if (current == null || current.version != extensionManager.extensionsVersion()) {
+            return bind();
+        }
+        if (current.instance != null) {
+            return current.instance;
+        }
+        Optional<T> instance = extensionManager.instantiate(current.descriptor, extensionPoint);
+        // the extension may fail to be instantiated this time
+        return instance.isPresent() ? instance : extensionManager.getExtension(extensionPoint, query);
+    }
+
+
+    /*
+     * Select the extension again, returning the instance created meanwhile
+     */
+    private Optional<T> bind() {
+        // the version is read first, so any change meanwhile would force a new binding
+        long version = extensionManager.extensionsVersion();
+        List<ExtensionDescriptor> descriptors = extensionManager.validExtensions(extensionPoint, query);
+        for (ExtensionDescriptor descriptor : descriptors) {
+            Optional<T> instance = extensionManager.instantiate(descriptor, extensionPoint);
+            if (instance.isPresent()) {
+                binding = ExtensionListHandle.isReusable(descriptor) ?
+                    new Binding<>(version, null, instance) :
+                    new Binding<>(version, descriptor, null);
+                return instance;
+            }
+        }
+        binding = new Binding<>(version, null, Optional.empty());
+        return Optional.empty();
+    }
+
+
+    private static final class Binding<T> {
+
+        private final long version;
+        private final ExtensionDescriptor descriptor;
+        private final Optional<T> instance;
+
+        private Binding(long version, ExtensionDescriptor descriptor, Optional<T> instance) {
+            this.version = version;
+            this.descriptor = descriptor;
+            this.instance = instance;
+        }
+    }
+
+}
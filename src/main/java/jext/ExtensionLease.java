@@ -0,0 +1,68 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jext.internal.ExtensionPool;
+
+
+/**
+ * Exclusive use of an extension instance, obtained using
+ * {@link ExtensionManager#borrowExtension(Class)}. Closing the lease returns
+ * the instance to its pool, so it is meant to be used within a
+ * try-with-resources block:
+ * <pre>
+ * try (var lease = extensionManager.borrowExtension(MyExtensionPoint.class).orElseThrow()) {
+ *     lease.get().run();
+ * }
+ * </pre>
+ * If the extension is not {@link ExtensionScope#POOLED}, the lease simply
+ * wraps an instance obtained as usual, and closing it has no effect.
+ */
+public final class ExtensionLease<T> implements AutoCloseable {
+
+    private final T instance;
+    private final ExtensionPool pool;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+
+    ExtensionLease(T instance, ExtensionPool pool) {
+        this.instance = instance;
+        this.pool = pool;
+    }
+
+
+    /**
+     * @return The borrowed instance
+     * @throws IllegalStateException if the lease has been closed
+     */
+    public T get() {
+        if (closed.get()) {
+            throw new IllegalStateException("The extension lease has been closed");
+        }
+        return instance;
+    }
+
+
+    /**
+     * @return Whether the instance belongs to a pool
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+
+    /**
+     * Return the instance to its pool. Further invocations have no effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true) && pool != null) {
+            pool.giveBack(instance);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import jext.internal.ExtensionDescriptor;
+
+
+/**
+ * Handle of every extension of an extension point, in priority order,
+ * obtained once using {@link ExtensionManager#getExtensionListHandle(Class)}
+ * and meant to be kept by frequently invoked code.
+ * <p>
+ * The extensions are selected the first time {@link #get()} is invoked, and
+ * reused until the extensions of the manager change, in which case they are
+ * selected again. Instances of {@link ExtensionScope#GLOBAL} and
+ * {@link ExtensionScope#SESSION} extensions are reused, while instances of
+ * {@link ExtensionScope#LOCAL} extensions are created (and those of
+ * {@link ExtensionScope#THREAD} extensions obtained) on each invocation. If
+ * every extension is global or session-scoped, the very same list is
+ * returned every time.
+ * <p>
+ * Extensions provided by external loaders are not known in advance, so if
+ * any {@link ExtensionLoader} is present each invocation is equivalent to
+ * {@link ExtensionManager#getExtensions(Class, ExtensionQuery)}.
+ * <p>
+ * Handles are thread-safe.
+ *
+ * @see ExtensionHandle
+ */
+public final class ExtensionListHandle<T> implements Supplier<List<T>> {
+
+    private final ExtensionManager extensionManager;
+    private final Class<T> extensionPoint;
+    private final ExtensionQuery query;
+    private volatile Binding<T> binding;
+
+
+    ExtensionListHandle(ExtensionManager extensionManager, Class<T> extensionPoint, ExtensionQuery query) {
+        this.extensionManager = extensionManager;
+        this.extensionPoint = extensionPoint;
+        this.query = query;
+    }
+
+
+    public Class<T> extensionPoint() {
+        return extensionPoint;
+    }
+
+
+    /**
+     * @return An unmodifiable priority-ordered list with the current
+     * instances of the extensions, empty if none was found
+     */
+    @Override
+    public List<T> get() {
+        if (!extensionManager.hasStableExtensions()) {
+            return extensionManager.getExtensions(extensionPoint, query)
+                .collect(Collectors.toUnmodifiableList());
+        }
+        Binding<T> current = binding;
+        if (current == null || current.version != extensionManager.extensionsVersion()) {
+            return bind();
+        }
+        if (current.instances != null) {
+            return current.instances;
+        }
+        List<T> instances = new ArrayList<>(current.descriptors.length);
+        for (int i = 0; i < current.descriptors.length; i++) {
+            T instance = current.reusedInstances.get(i);
+            if (instance == null) {
+                instance = extensionManager.instantiate(current.descriptors[i], extensionPoint)
+                    .orElse(null);
+            }
+            if (instance != null) {
+                instances.add(instance);
+            }
+        }
+        return Collections.unmodifiableList(instances);
+    }
+
+
+    /*
+     * Select the extensions again, returning the instances created meanwhile
+     */
+    private List<T> bind() {
+        // the version is read first, so any change meanwhile would force a new binding
+        long version = extensionManager.extensionsVersion();
+        List<ExtensionDescriptor> descriptors = new ArrayList<>();
+        List<T> reusedInstances = new ArrayList<>();
+        List<T> instances = new ArrayList<>();
+        boolean allReusable = true;
+        for (ExtensionDescriptor descriptor : extensionManager.validExtensions(extensionPoint, query)) {
+            Optional<T> instance = extensionManager.instantiate(descriptor, extensionPoint);
+            if (instance.isEmpty()) {
+                continue;
+            }
+            boolean reusable = isReusable(descriptor);
+            allReusable &= reusable;
+            descriptors.add(descriptor);
+            reusedInstances.add(reusable ? instance.get() : null);
+            instances.add(instance.get());
+        }
+        List<T> result = Collections.unmodifiableList(instances);
+        binding = new Binding<>(
+            version,
+            descriptors.toArray(new ExtensionDescriptor[0]),
+            reusedInstances,
+            allReusable ? result : null
+        );
+        return result;
+    }
+
+
+    static boolean isReusable(ExtensionDescriptor descriptor) {
+        ExtensionScope scope = descriptor.metadata().scope();
+        return scope == ExtensionScope.GLOBAL || scope == ExtensionScope.SESSION;
+    }
+
+
+    private static final class Binding<T> {
+
+        private final long version;
+        private final ExtensionDescriptor[] descriptors;
+        private final List<T> reusedInstances;
+        private final List<T> instances;
+
+        private Binding(
+            long version,
+            ExtensionDescriptor[] descriptors,
+            List<T> reusedInstances,
+            List<T> instances
+        ) {
+            this.version = version;
+            this.descriptors = descriptors;
+            this.reusedInstances = reusedInstances;
+            this.instances = instances;
+        }
+    }
+
+}
@@ -5,18 +5,37 @@ package jext;
 
 
 import java.io.*;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jext.internal.Broadcast;
+import jext.internal.ExtensionDescriptor;
 import jext.internal.ExtensionLoadContext;
-import jext.internal.ExtensionVersion;
+import jext.internal.ExtensionPool;
+import jext.internal.ExtensionPools;
+import jext.internal.ExtensionRegistry;
+import jext.internal.Futures;
 import jext.internal.InternalExtensionLoader;
+import jext.internal.LazyExtension;
+import jext.internal.Metrics;
+import jext.internal.ResolvedExtensions;
+import jext.internal.Sessions;
+import jext.internal.VirtualThreads;
 
 
 /**
@@ -27,18 +46,43 @@ import jext.internal.InternalExtensionLoader;
  *  but there is no actual constraint about that. Clients can create
  *  as many instances as they required, but being responsible of releasing
  *  references when they are no longer required (see {@link #clear()}).
+ *  <p>
+ *  Instances are thread-safe, so the same manager can be shared by any
+ *  number of threads. Once an extension point has been resolved, requesting
+ *  its extensions does not involve any lock.
  */
-public class ExtensionManager {
+public class ExtensionManager implements AutoCloseable {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(ExtensionManager.class);
-    protected static final ExtensionLoader builtInExtensionLoader = new InternalExtensionLoader();
+    private static final InternalExtensionLoader internalExtensionLoader =
+        new InternalExtensionLoader();
+    protected static final ExtensionLoader builtInExtensionLoader = internalExtensionLoader;
+
+    /*
+     * Metadata is bound to the extension class rather than to the instance,
+     * so it is computed once per class and it does not retain any instance
+     * nor prevents the class from being unloaded
+     */
+    private static final ClassValue<Optional<Extension>> extensionMetadata = new ClassValue<>() {
+        @Override
+        protected Optional<Extension> computeValue(Class<?> type) {
+            return Optional.ofNullable(type.getAnnotation(Extension.class));
+        }
+    };
 
-    protected final String sessionID = UUID.randomUUID().toString();
+    /*
+     * Session identifiers only have to be unique within the running
+     * application, since session instances are never shared outside of it
+     */
+    private static final AtomicLong sessionCounter = new AtomicLong();
+
+    protected final String sessionID = Long.toString(sessionCounter.incrementAndGet());
     protected final List<ClassLoader> classLoaders;
-    protected final List<ExtensionLoader> extensionLoaders = extensionLoaders();
-    protected final Map<Class<?>, Set<Class<?>>> invalidExtensions = new HashMap<>();
-    protected final Map<Class<?>, Set<Class<?>>> validExtensions = new HashMap<>();
-    protected final Map<Object, Extension> extensionMetadata = new HashMap<>();
+    protected final List<ExtensionLoader> extensionLoaders;
+    private final ExtensionRegistry registry;
+    private final boolean sharedRegistry;
+    private final ExtensionPools pools;
+    private final Sessions.Session session;
 
 
     /**
@@ -58,6 +102,11 @@ public class ExtensionManager {
      */
     public ExtensionManager(ClassLoader... loaders) {
         this.classLoaders = Arrays.asList(loaders);
+        this.extensionLoaders = extensionLoaders();
+        this.registry = new ExtensionRegistry(classLoaders, internalExtensionLoader);
+        this.sharedRegistry = false;
+        this.pools = new ExtensionPools();
+        this.session = Sessions.register(this, sessionID, sessionLoaders(extensionLoaders), 0);
     }
 
 
@@ -69,33 +118,128 @@ public class ExtensionManager {
      */
     public ExtensionManager(Collection<ClassLoader> loaders) {
         this.classLoaders = new ArrayList<>(loaders);
+        this.extensionLoaders = extensionLoaders();
+        this.registry = new ExtensionRegistry(classLoaders, internalExtensionLoader);
+        this.sharedRegistry = false;
+        this.pools = new ExtensionPools();
+        this.session = Sessions.register(this, sessionID, sessionLoaders(extensionLoaders), 0);
+    }
+
+
+    /**
+     * Creates a new session of the given extension manager, sharing
+     * everything but the session instances
+     *
+     * @param parent The extension manager that creates the session
+     */
+    protected ExtensionManager(ExtensionManager parent) {
+        this.classLoaders = parent.classLoaders;
+        this.extensionLoaders = parent.extensionLoaders;
+        this.registry = parent.registry;
+        this.sharedRegistry = true;
+        this.pools = parent.pools;
+        this.session = Sessions.register(
+            this,
+            sessionID,
+            sessionLoaders(extensionLoaders),
+            parent.session.idleTimeout()
+        );
+    }
+
+
+    /**
+     * Enable the parallel discovery of extensions. The class loaders of this
+     * manager will be scanned concurrently using the given executor, which is
+     * convenient when there are many class loaders (for example, one per
+     * plugin) and scanning each one involves I/O. Results are merged
+     * deterministically, so they are exactly the same than scanning the class
+     * loaders sequentially.
+     * <p>
+     * The executor is also used to query the external extension loaders
+     * concurrently on each request, since they may be slow (for example, when
+     * they look up beans in an IoC container). Their results are merged in the
+     * same order the loaders are declared, so extensions with the same
+     * priority are always returned in the same order.
+     * <p>
+     * Sessions created from this manager inherit this setting.
+     *
+     * @param executor The executor used to scan the class loaders, or
+     * <code>null</code> to scan them sequentially (the default)
+     * @return This extension manager
+     */
+    public ExtensionManager withParallelDiscovery(Executor executor) {
+        registry.discoveryExecutor(executor);
+        return this;
+    }
+
+
+    /**
+     * Use a discovery snapshot previously stored with
+     * {@link #storeDiscoverySnapshot(Path)}, so the extension points stored in
+     * it are not discovered again. This is intended to speed up the startup of
+     * applications with many extensions or plugins.
+     * <p>
+     * The snapshot is only used if the contents of the class loaders (the
+     * size and modification time of every jar and class directory) have not
+     * changed since it was stored; otherwise, extensions are discovered as
+     * usual.
+     *
+     * @param file The snapshot file
+     * @return This extension manager
+     */
+    public ExtensionManager withDiscoverySnapshot(Path file) {
+        if (!registry.restoreSnapshot(file)) {
+            LOGGER.debug("Discovery snapshot {} not used; extensions will be discovered", file);
+        }
+        return this;
+    }
+
+
+    /**
+     * Store the extension points resolved so far in a discovery snapshot file,
+     * that can be used later by means of {@link #withDiscoverySnapshot(Path)}.
+     * Extensions provided by external loaders are not stored.
+     *
+     * @param file The snapshot file
+     * @throws IOException If the file cannot be written
+     * @throws IllegalArgumentException If the class loaders of this manager
+     * do not allow to detect whether the snapshot is stale
+     */
+    public void storeDiscoverySnapshot(Path file) throws IOException {
+        registry.storeSnapshot(file);
     }
 
 
     /**
      * Get the extension annotated metadata for a given extension
      *
-     * @param extension A extension instance
+     * @param extension A extension instance, or a proxy obtained using
+     * {@link #getLazyExtensions(Class)}
      * @return The extension metadata, or <code>null</code> if passed object is
      *         not an extension
      */
     public <T> Extension getExtensionMetadata(T extension) {
-        return extensionMetadata.computeIfAbsent(
-            extension,
-            e -> e.getClass().getAnnotation(Extension.class)
-        );
+        Optional<Extension> metadata = extensionMetadata.get(extension.getClass());
+        if (metadata.isPresent()) {
+            return metadata.get();
+        }
+        return LazyExtension.metadataOf(extension).orElse(null);
     }
 
 
     /**
-     * Get all the extension annotated metadata for a given extension point
+     * Get all the extension annotated metadata for a given extension point.
+     * <p>
+     * Extensions handled by the built-in loader are not instantiated in
+     * order to obtain their metadata.
      *
      * @param extensionPoint A extension point
      * @return The extension metadata, or <code>null</code> if passed object is
      *         not an extension
      */
     public <T> Stream<Extension> getExtensionMetadata(Class<T> extensionPoint) {
-        return getExtensions(extensionPoint).map(this::getExtensionMetadata);
+        return obtainValidExtensions(ExtensionLoadContext.all(sessionID,extensionPoint)).stream()
+            .map(ExtensionDescriptor::metadata);
     }
 
 
@@ -108,6 +252,23 @@ public class ExtensionManager {
      * @return An optional object either empty or wrapping the instance
      */
     public <T> Optional<T> getExtension(Class<T> extensionPoint) {
+        if (extensionLoaders.isEmpty()) {
+            // no filtering nor sorting required, just take the first extension
+            // of the precomputed priority order that can be instantiated
+            ResolvedExtensions<T> resolved = resolve(extensionPoint);
+            session.touch();
+            for (int i = 0; i < resolved.size(); i++) {
+                Optional<T> instance = internalExtensionLoader.instantiate(
+                    resolved.get(i),
+                    extensionPoint,
+                    sessionID
+                );
+                if (instance.isPresent()) {
+                    return instance;
+                }
+            }
+            return Optional.empty();
+        }
         return loadFirst(ExtensionLoadContext.all(sessionID,extensionPoint));
     }
 
@@ -161,7 +322,9 @@ public class ExtensionManager {
      * @param provider The extension provider
      * @param name The extension name
      * @param version The minimal version
-     * @return An optional object either empty or wrapping the instance
+     * @return An optional object either empty or wrapping the instance; empty
+     * if the provider, the name or the version is <code>null</code>, since no
+     * extension would match them
      */
     public <T> Optional<T> getExtensionThatSatisfyMetadata(
         Class<T> extensionPoint,
@@ -169,16 +332,34 @@ public class ExtensionManager {
         String name,
         String version
     ) {
-        return loadFirst(
-            ExtensionLoadContext.satisfyingData(
-                sessionID,
-                extensionPoint,
-                identifier(provider,name,version)
-            )
+        if (provider == null || name == null || version == null) {
+            return Optional.empty();
+        }
+        return getExtension(
+            extensionPoint,
+            ExtensionQuery.any().provider(provider).name(name).version(version)
         );
     }
 
 
+    /**
+     * Retrieves the instance for the given extension point that satisfies the
+     * given query, if any exists. In the case of existing multiple
+     * alternatives, the one with highest priority will be used.
+     * <p>
+     * Unlike metadata predicates, queries are answered using indexes and
+     * their results are cached, so this is the preferred way to select
+     * extensions by provider, name, version, scope or priority.
+     *
+     * @param extensionPoint The extension point type
+     * @param query The query that the extension metadata must satisfy
+     * @return An optional object either empty or wrapping the instance
+     */
+    public <T> Optional<T> getExtension(Class<T> extensionPoint, ExtensionQuery query) {
+        return getExtensions(extensionPoint, query).findFirst();
+    }
+
+
 
 
 
@@ -190,7 +371,28 @@ public class ExtensionManager {
      * @return A list with the extensions, empty if none was found
      */
     public <T> Stream<T> getExtensions(Class<T> extensionPoint) {
-        return loadAll(ExtensionLoadContext.all(sessionID,extensionPoint));
+        var context = ExtensionLoadContext.all(sessionID,extensionPoint);
+        // there is no condition to check, so the priority order is streamed as is
+        return obtainValidExtensions(context).stream()
+            .map(descriptor -> instantiate(descriptor, context))
+            .flatMap(Optional::stream);
+    }
+
+
+    /**
+     * Retrieves a priority-ordered list with all the extensions for the given
+     * extension point that satisfies the given query.
+     *
+     * @param extensionPoint The extension point type
+     * @param query The query that the extension metadata must satisfy
+     * @return A list with the extensions, empty if none was found
+     * @see #getExtension(Class, ExtensionQuery)
+     */
+    public <T> Stream<T> getExtensions(Class<T> extensionPoint, ExtensionQuery query) {
+        var context = ExtensionLoadContext.all(sessionID,extensionPoint);
+        return obtainValidExtensions(context, query).stream()
+            .map(descriptor -> instantiate(descriptor, context))
+            .flatMap(Optional::stream);
     }
 
 
@@ -224,17 +426,403 @@ public class ExtensionManager {
     }
 
 
+    /**
+     * Retrieves a lazy proxy of each extension for the given extension
+     * point, as in {@link #getExtensions(Class)}, without creating any
+     * instance.
+     *
+     * @param extensionPoint The extension point type, that must be an interface
+     * @return A priority-ordered stream with the extension proxies
+     * @throws IllegalArgumentException if the extension point is not an interface
+     * @see #getLazyExtensions(Class, ExtensionQuery)
+     */
+    public <T> Stream<T> getLazyExtensions(Class<T> extensionPoint) {
+        return getLazyExtensions(extensionPoint, ExtensionQuery.any());
+    }
+
+
+    /**
+     * Retrieves a lazy proxy of each extension for the given extension
+     * point that satisfies the given query, without creating any instance.
+     * <p>
+     * The actual instance of each extension is obtained (according its
+     * scope) the first time any method of its proxy is invoked, so the cost
+     * of creating extensions that are never used is avoided. The metadata
+     * of the extensions is available beforehand, using
+     * {@link #getExtensionMetadata(Object)} over the proxies. If the
+     * extension cannot be instantiated at that moment, the invocation fails
+     * with an {@link IllegalStateException}.
+     * <p>
+     * Extensions provided by external loaders are already instantiated, so
+     * they are returned as they are.
+     *
+     * @param extensionPoint The extension point type, that must be an interface
+     * @param query The query that the extension metadata must satisfy
+     * @return A priority-ordered stream with the extension proxies
+     * @throws IllegalArgumentException if the extension point is not an interface
+     */
+    public <T> Stream<T> getLazyExtensions(Class<T> extensionPoint, ExtensionQuery query) {
+        if (!extensionPoint.isInterface()) {
+            throw new IllegalArgumentException(
+                "Lazy extensions require an interface extension point: " + extensionPoint.getName()
+            );
+        }
+        return validExtensions(extensionPoint, query).stream().map(descriptor ->
+            descriptor.instance() != null ?
+                extensionPoint.cast(descriptor.instance()) :
+                LazyExtension.proxy(extensionPoint, descriptor, () -> instantiate(descriptor, extensionPoint))
+        );
+    }
+
+
+    /**
+     * Retrieves asynchronously an instance for the given extension point, as
+     * in {@link #getExtension(Class)}. Discovery and instantiation are
+     * performed using the executor set with
+     * {@link #withParallelDiscovery(Executor)}, or the common fork-join pool
+     * if none was set.
+     *
+     * @param extensionPoint The extension point type
+     * @return A future of an optional object either empty or wrapping the instance
+     * @see #getExtensionAsync(Class, Executor)
+     */
+    public <T> CompletableFuture<Optional<T>> getExtensionAsync(Class<T> extensionPoint) {
+        return getExtensionAsync(extensionPoint, asyncExecutor());
+    }
+
+
+    /**
+     * Retrieves asynchronously an instance for the given extension point, as
+     * in {@link #getExtension(Class)}, so the invoking thread is never blocked
+     * by class loading, static initializers or external loaders.
+     * <p>
+     * Concurrent requests for an extension point that has not been resolved
+     * yet share a single resolution, instead of performing it once each.
+     *
+     * @param extensionPoint The extension point type
+     * @param executor The executor used to discover and instantiate the extension
+     * @return A future of an optional object either empty or wrapping the instance
+     */
+    public <T> CompletableFuture<Optional<T>> getExtensionAsync(
+        Class<T> extensionPoint,
+        Executor executor
+    ) {
+        return registry.resolveAsync(extensionPoint, executor)
+            .thenApplyAsync(resolved -> getExtension(extensionPoint), executor);
+    }
+
+
+    /**
+     * Retrieves asynchronously a priority-ordered list with all extensions
+     * for the given extension point, as in {@link #getExtensions(Class)}.
+     * Discovery and instantiation are performed using the executor set with
+     * {@link #withParallelDiscovery(Executor)}, or the common fork-join pool
+     * if none was set.
+     *
+     * @param extensionPoint The extension point type
+     * @return A future of a list with the extensions, empty if none was found
+     * @see #getExtensionsAsync(Class, Executor)
+     */
+    public <T> CompletableFuture<List<T>> getExtensionsAsync(Class<T> extensionPoint) {
+        return getExtensionsAsync(extensionPoint, asyncExecutor());
+    }
+
+
+    /**
+     * Retrieves asynchronously a priority-ordered list with all extensions
+     * for the given extension point, as in {@link #getExtensions(Class)}.
+     * <p>
+     * Concurrent requests for an extension point that has not been resolved
+     * yet share a single resolution, instead of performing it once each.
+     *
+     * @param extensionPoint The extension point type
+     * @param executor The executor used to discover and instantiate the extensions
+     * @return A future of a list with the extensions, empty if none was found
+     */
+    public <T> CompletableFuture<List<T>> getExtensionsAsync(
+        Class<T> extensionPoint,
+        Executor executor
+    ) {
+        return registry.resolveAsync(extensionPoint, executor)
+            .thenApplyAsync(
+                resolved -> getExtensions(extensionPoint).collect(Collectors.toList()),
+                executor
+            );
+    }
+
+
+    /**
+     * Warm up the given extension points, using the common fork-join pool.
+     *
+     * @param extensionPoints The extension point types
+     * @return A report of the time spent on each extension point and extension
+     * @see #preload(ForkJoinPool, Class...)
+     */
+    public PreloadReport preload(Class<?>... extensionPoints) {
+        return preload(ForkJoinPool.commonPool(), extensionPoints);
+    }
+
+
+    /**
+     * Warm up the given extension points, so the first requests do not have
+     * to wait for them. The extension points are discovered and validated
+     * in parallel, and then the instances of their {@link ExtensionScope#GLOBAL}
+     * extensions are created, also in parallel. Extensions provided by
+     * external loaders are not preloaded.
+     * <p>
+     * This method blocks until the warm-up is complete, so it can be used to
+     * decide when the application is ready.
+     *
+     * @param pool The fork-join pool used to run the warm-up
+     * @param extensionPoints The extension point types
+     * @return A report of the time spent on each extension point and extension
+     */
+    public PreloadReport preload(ForkJoinPool pool, Class<?>... extensionPoints) {
+        return preload(pool, List.of(extensionPoints));
+    }
+
+
+    /**
+     * Warm up every extension point that has any extension declared in the
+     * extension index, using the common fork-join pool.
+     *
+     * @return A report of the time spent on each extension point and extension
+     * @see #preload(ForkJoinPool, Class...)
+     */
+    public PreloadReport preloadAll() {
+        return preloadAll(ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * Warm up every extension point that has any extension declared in the
+     * extension index of the class loaders of this manager.
+     *
+     * @param pool The fork-join pool used to run the warm-up
+     * @return A report of the time spent on each extension point and extension
+     * @see #preload(ForkJoinPool, Class...)
+     */
+    public PreloadReport preloadAll(ForkJoinPool pool) {
+        return preload(pool, registry.indexedExtensionPoints());
+    }
+
+
+    /**
+     * Invoke the given function over every extension of the given extension
+     * point concurrently, and wait for the results. The invocations are
+     * executed in virtual threads if the platform supports them; otherwise,
+     * the executor set with {@link #withParallelDiscovery(Executor)} or the
+     * common fork-join pool is used. If any invocation fails, the broadcast
+     * fails as soon as possible.
+     *
+     * @param extensionPoint The extension point type
+     * @param function The function to invoke over each extension
+     * @return A list with the results, in priority order of the extensions
+     * @throws BroadcastException if any invocation fails
+     * @see #broadcast(Class, Function, Executor, BroadcastPolicy)
+     */
+    public <T, R> List<R> broadcast(Class<T> extensionPoint, Function<? super T, ? extends R> function) {
+        Executor executor = VirtualThreads.executor();
+        if (executor == null) {
+            executor = asyncExecutor();
+        }
+        return broadcast(extensionPoint, function, executor, BroadcastPolicy.FAIL_FAST);
+    }
+
+
+    /**
+     * Invoke the given function over every extension of the given extension
+     * point concurrently, and wait for the results. The latency of the
+     * broadcast is that of the slowest invocation, instead of the sum of all
+     * of them.
+     * <p>
+     * Extensions are obtained in the current thread, as in
+     * {@link #getExtensions(Class)}; only the invocations are executed
+     * concurrently.
+     *
+     * @param extensionPoint The extension point type
+     * @param function The function to invoke over each extension
+     * @param executor The executor used to run the invocations
+     * @param policy How to proceed when any invocation fails
+     * @return A list with the results, in priority order of the extensions
+     * @throws BroadcastException if any invocation fails
+     */
+    public <T, R> List<R> broadcast(
+        Class<T> extensionPoint,
+        Function<? super T, ? extends R> function,
+        Executor executor,
+        BroadcastPolicy policy
+    ) {
+        List<T> extensions = getExtensions(extensionPoint).collect(Collectors.toList());
+        return Broadcast.invoke(extensions, function, executor, policy);
+    }
+
+
+    /**
+     * Obtain a handle of the extension with highest priority for the given
+     * extension point. The handle should be obtained once and kept, since it
+     * avoids selecting the extension again as long as the extensions of the
+     * manager do not change.
+     *
+     * @param extensionPoint The extension point type
+     * @return The handle of the extension
+     * @see ExtensionHandle
+     */
+    public <T> ExtensionHandle<T> getExtensionHandle(Class<T> extensionPoint) {
+        return getExtensionHandle(extensionPoint, ExtensionQuery.any());
+    }
+
+
+    /**
+     * Obtain a handle of the extension with highest priority for the given
+     * extension point that satisfies the given query.
+     *
+     * @param extensionPoint The extension point type
+     * @param query The query that the extension metadata must satisfy
+     * @return The handle of the extension
+     * @see ExtensionHandle
+     */
+    public <T> ExtensionHandle<T> getExtensionHandle(Class<T> extensionPoint, ExtensionQuery query) {
+        return new ExtensionHandle<>(this, extensionPoint, query);
+    }
+
+
+    /**
+     * Obtain a handle of every extension for the given extension point. The
+     * handle should be obtained once and kept, since it avoids selecting the
+     * extensions again as long as the extensions of the manager do not change.
+     *
+     * @param extensionPoint The extension point type
+     * @return The handle of the extensions
+     * @see ExtensionListHandle
+     */
+    public <T> ExtensionListHandle<T> getExtensionListHandle(Class<T> extensionPoint) {
+        return getExtensionListHandle(extensionPoint, ExtensionQuery.any());
+    }
+
+
+    /**
+     * Obtain a handle of every extension for the given extension point that
+     * satisfies the given query.
+     *
+     * @param extensionPoint The extension point type
+     * @param query The query that the extension metadata must satisfy
+     * @return The handle of the extensions
+     * @see ExtensionListHandle
+     */
+    public <T> ExtensionListHandle<T> getExtensionListHandle(
+        Class<T> extensionPoint,
+        ExtensionQuery query
+    ) {
+        return new ExtensionListHandle<>(this, extensionPoint, query);
+    }
+
+
+    /**
+     * Borrow the extension with highest priority for the given extension
+     * point, for exclusive use until the lease is closed.
+     *
+     * @param extensionPoint The extension point type
+     * @return An optional object either empty or wrapping the lease
+     * @throws InterruptedException if interrupted while waiting for a pooled instance
+     * @see #borrowExtension(Class, ExtensionQuery)
+     */
+    public <T> Optional<ExtensionLease<T>> borrowExtension(Class<T> extensionPoint)
+    throws InterruptedException {
+        return borrowExtension(extensionPoint, ExtensionQuery.any());
+    }
+
+
+    /**
+     * Borrow the extension with highest priority for the given extension
+     * point that satisfies the given query, for exclusive use until the
+     * lease is closed.
+     * <p>
+     * If the extension is {@link ExtensionScope#POOLED}, an idle instance
+     * of its pool is borrowed; if every instance is in use and the pool is
+     * full, this method waits until one is returned. Otherwise, the
+     * instance is obtained according its scope, as in
+     * {@link #getExtension(Class, ExtensionQuery)}.
+     *
+     * @param extensionPoint The extension point type
+     * @param query The query that the extension metadata must satisfy
+     * @return An optional object either empty or wrapping the lease
+     * @throws InterruptedException if interrupted while waiting for a pooled instance
+     * @see #withExtensionPool(Class, int, int)
+     */
+    public <T> Optional<ExtensionLease<T>> borrowExtension(
+        Class<T> extensionPoint,
+        ExtensionQuery query
+    ) throws InterruptedException {
+        for (ExtensionDescriptor descriptor : validExtensions(extensionPoint, query)) {
+            Optional<ExtensionLease<T>> lease = borrow(descriptor, extensionPoint);
+            if (lease.isPresent()) {
+                return lease;
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * Set the sizes of the pool of the given {@link ExtensionScope#POOLED}
+     * extension class. It must be configured before borrowing any instance;
+     * otherwise, the pool is created with a minimum size of 0 and a maximum
+     * size equals to the number of available processors. This setting is
+     * shared with the sessions of this manager.
+     *
+     * @param extensionClass The extension class
+     * @param minSize The number of instances created in advance, the first
+     * time an instance is borrowed
+     * @param maxSize The maximum number of instances that may exist at the
+     * same time
+     * @return This extension manager
+     * @throws IllegalArgumentException if the minimum size is negative, the
+     * maximum size is not positive, or the minimum size exceeds the maximum
+     * size
+     */
+    public ExtensionManager withExtensionPool(Class<?> extensionClass, int minSize, int maxSize) {
+        pools.configure(extensionClass.getName(), minSize, maxSize);
+        return this;
+    }
+
+
+    /**
+     * @return The current counters of the pools of this manager, by
+     * extension class name
+     * @see ExtensionPoolStatistics
+     */
+    public Map<String, ExtensionPoolStatistics> poolStatistics() {
+        Map<String, ExtensionPoolStatistics> statistics = new TreeMap<>();
+        for (ExtensionPool pool : pools.pools()) {
+            statistics.put(pool.extensionName(), new ExtensionPoolStatistics(
+                pool.minSize(),
+                pool.maxSize(),
+                pool.inUse(),
+                pool.idle(),
+                pool.created(),
+                pool.borrowed(),
+                pool.waits(),
+                Duration.ofNanos(pool.waitTime())
+            ));
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+
     /**
      * Creates a new session of the extension manager. Each session
      * will handle extensions marked with the {@link ExtensionScope#SESSION}
-     * scope in isolation, returning a singleton instance per session.
+     * and {@link ExtensionScope#THREAD} scopes in isolation, returning a
+     * singleton instance per session (or per thread within the session).
      * Other scopes will be treated normally.
      * <p>
-     * Internally, each instance of <tt>ExtensionManager</tt> is considered
-     * an independent session, so this method is equivalent to:
-     * <code>
-     *     new ExtensionManager(extensionManager.classLoaders())
-     * </code>
+     * Sessions share the class loaders, the external loaders and the resolved
+     * extensions with this manager (and with each other), so creating a
+     * session is cheap and it does not require discovering nor validating the
+     * extensions again. Consequently, invalidating extensions, changing the
+     * parallel discovery or watching plugin directories using a session
+     * affects the rest of them as well.
      * <p>
      * <b>IMPORTANT:</b> Each session created should
      * invoke the method {@link #clear()} after being used. Otherwise,
@@ -243,7 +831,7 @@ public class ExtensionManager {
      * in the session scope
      */
     public ExtensionManager newSession() {
-        return new ExtensionManager(classLoaders);
+        return new ExtensionManager(this);
     }
 
 
@@ -254,218 +842,502 @@ public class ExtensionManager {
      * If you are using one <tt>ExtensionManager</tt> object as a singleton,
      * usually there is no need to invoke this method. However, it is of major
      * relevance when controlling the lifecycle of several instances.
+     * <p>
+     * Clearing a session created with {@link #newSession()} only releases its
+     * own session instances; the resolved extensions and the pools of
+     * {@link ExtensionScope#POOLED} extensions shared with the rest of
+     * sessions are kept.
      * @see #newSession()
      */
     public void clear() {
-        validExtensions.clear();
-        invalidExtensions.clear();
-        extensionMetadata.clear();
-        builtInExtensionLoader.invalidateSession(sessionID);
-        extensionLoaders.forEach(loader -> loader.invalidateSession(sessionID));
+        if (!sharedRegistry) {
+            registry.invalidateAll();
+            pools.releaseAll();
+        }
+        session.releaseInstances();
     }
 
 
     /**
-     * @return An unmodifiable list with the class loaders used by this manager
+     * Release the session instances of this manager, as in {@link #clear()},
+     * and unregister the session. The manager should not be used afterwards.
+     * <p>
+     * Managers are closed automatically once they become unreachable, but
+     * closing them explicitly (for instance, using a try-with-resources
+     * block) releases the session instances immediately.
+     *
+     * @see #sessionStatistics()
      */
-    public List<ClassLoader> classLoaders() {
-        return Collections.unmodifiableList(classLoaders);
+    @Override
+    public void close() {
+        if (!sharedRegistry) {
+            registry.invalidateAll();
+            pools.releaseAll();
+        }
+        session.close();
     }
 
 
-    private <T> Stream<T> loadAll(ExtensionLoadContext<T> context) {
-        return obtainValidExtensions(context).stream()
-            .filter(context.condition())
-            .sorted(sortByPriority());         
+    /**
+     * Release automatically the session instances of this manager when it
+     * has not requested any extension for the given time. The session
+     * remains usable; new session instances would be created if requested
+     * again. Sessions created afterwards using {@link #newSession()} inherit
+     * this setting.
+     *
+     * @param idleTimeout The idle timeout, or {@link Duration#ZERO} to keep
+     * the session instances until the manager is cleared or closed (the default)
+     * @return This extension manager
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public ExtensionManager withSessionIdleTimeout(Duration idleTimeout) {
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("Negative session idle timeout: " + idleTimeout);
+        }
+        session.idleTimeout(idleTimeout.toNanos());
+        return this;
     }
 
 
-    private <T> Optional<T> loadFirst(ExtensionLoadContext<T> context) {
-        return obtainValidExtensions(context).stream()
-            .filter(context.condition())
-            .min(sortByPriority());         
+    /**
+     * @return The current counters of the sessions of every extension manager
+     */
+    public static SessionStatistics sessionStatistics() {
+        return new SessionStatistics(
+            Sessions.liveSessions(),
+            Sessions.closedSessions(),
+            Sessions.collectedSessions(),
+            Sessions.expiredSessions()
+        );
     }
 
-    
-    
 
-    private <T> List<T> obtainValidExtensions(ExtensionLoadContext<T> context) {
+    /**
+     * Discard the resolved extensions of the given extension point, so they
+     * will be discovered and validated again the next time they are requested.
+     * Existing extension instances are not affected.
+     * <p>
+     * The extensions of each extension point are resolved only once, so this
+     * method should be invoked whenever the available extensions may have
+     * changed (for example, if the content of a class loader was modified).
+     *
+     * @param extensionPoint The extension point type
+     * @see #invalidateAll()
+     */
+    public void invalidate(Class<?> extensionPoint) {
+        registry.invalidate(extensionPoint);
+    }
 
-        this.validExtensions.putIfAbsent(context.extensionPoint(), new HashSet<>());
-        this.invalidExtensions.putIfAbsent(context.extensionPoint(), new HashSet<>());
 
-        List<T> collectedExtensions = new ArrayList<>();
-        collectValidExtensions(
-            context.withInternalLoader(classLoaders, builtInExtensionLoader),
-            collectedExtensions
-        );
-        for (ExtensionLoader extensionLoader : extensionLoaders) {
-            collectValidExtensions(
-                context.withExternalLoader(classLoaders, extensionLoader),
-                collectedExtensions
-            );
-        }
-        removeOverridenExtensions(collectedExtensions);
-        return collectedExtensions;
+    /**
+     * Discard the resolved extensions of every extension point, so they
+     * will be discovered and validated again the next time they are requested.
+     * Existing extension instances are not affected.
+     *
+     * @see #invalidate(Class)
+     */
+    public void invalidateAll() {
+        registry.invalidateAll();
     }
 
 
-    private <T> void collectValidExtensions(
-        ExtensionLoadContext<T> context,
-        List<T> collectedExtensions
-    ) {
-        Class<T> extensionPoint = context.extensionPoint();
-        LOGGER.debug("{} :: Searching...", context);
-        for (T extension : context.load()) {
+    /**
+     * Release every cached instance of the extension classes defined by the
+     * given class loader, regardless the session they belong to, and discard
+     * the resolved extensions of this manager.
+     * <p>
+     * The extension manager does not retain discarded class loaders, so this
+     * is not strictly required in order to unload them; however, it is
+     * advisable to invoke it in hot-redeployment scenarios so that the
+     * instances are released immediately. Notice that the class loader must
+     * not be used by any manager afterwards, otherwise new instances would be
+     * created as usual.
+     *
+     * @param classLoader The discarded class loader
+     */
+    public void release(ClassLoader classLoader) {
+        internalExtensionLoader.release(classLoader);
+        pools.release(classLoader);
+        registry.invalidateAll();
+    }
 
-            if (hasBeenInvalidated(extensionPoint, extension)) {
-                LOGGER.debug(
-                    "{} :: Found {} but ignored (it is marked as invalid)",
-                    context,
-                    extension
-                );
-                continue;
-            }
 
-            boolean valid = true;
-            if (!hasBeenValidated(extensionPoint, extension)) {
-                valid = validateExtension(context, extension);
-            }
-            if (valid) {
-                LOGGER.debug("{} :: Found {}", context, extension);
-                collectedExtensions.add(extension);
-            } else {
-                LOGGER.debug(
-                    "{} :: Found {} but ignored (marked as invalid)",
-                    context,
-                    extension
-                );
-            }
-        }
+    /**
+     * Watch the given directory for plugin jars. Each jar is loaded using its
+     * own class loader, and its extensions are made available through this
+     * manager. Whenever a jar is added, modified or removed, only its own
+     * extensions are added or removed, without scanning the rest of the class
+     * loaders again. Requests in progress during a change would see either
+     * the previous set of extensions or the new one, never a partial one.
+     * <p>
+     * The class loaders of the plugins are children of the first class loader
+     * of this manager.
+     *
+     * @param directory The directory containing the plugin jars
+     * @return The plugin directory, that should be closed in order to stop
+     * watching it and unload its plugins
+     * @throws IOException If the directory cannot be read or watched
+     */
+    public PluginDirectory watchPluginDirectory(Path directory) throws IOException {
+        ClassLoader parent = classLoaders.isEmpty() ?
+            Thread.currentThread().getContextClassLoader() :
+            classLoaders.get(0);
+        var pluginDirectory = new PluginDirectory(this, directory, parent);
+        pluginDirectory.start();
+        return pluginDirectory;
     }
 
 
-    private <T> boolean validateExtension(ExtensionLoadContext<T> context, T extension) {
+    /**
+     * @return An unmodifiable list with the class loaders used by this manager,
+     * including the class loaders of the plugins currently loaded
+     */
+    public List<ClassLoader> classLoaders() {
+        return registry.classLoaders();
+    }
 
-        Class<T> extensionPoint = context.extensionPoint();
-        ExtensionPoint extensionPointData = context.extensionPointData();
-        Extension extensionData = getExtensionMetadata(extension);
 
-        // this should not happen, but there is no guarantee that external
-        // service loaders provides non-externally managed extensions
-        if (extensionData.externallyManaged() != context.isExternallyManaged()) {
-            LOGGER.debug(
-                "Class {} is{} externally managed and the extension loader is{}; ignored",
-                extension.getClass(),
-                extensionData.externallyManaged() ? "" : " not",
-                context.isExternallyManaged() ? "" : " not"
-            );
-            this.invalidExtensions.get(extensionPoint).add(extension.getClass());
-            return false;
-        }
+    /*
+     * Replace the class loaders of plugins, discarding every instance of the
+     * removed ones
+     */
+    void updatePluginClassLoaders(List<ClassLoader> added, List<ClassLoader> removed) {
+        registry.update(added, removed);
+        removed.forEach(internalExtensionLoader::release);
+        removed.forEach(pools::release);
+    }
+
 
-        if (!areCompatible(extensionPointData, extensionData)) {
-            if (LOGGER.isWarnEnabled()) {
-                LOGGER.warn(
-                    "Extension point version of {} ({}) is not compatible with expected version {}",
-                    id(extensionData),
-                    extensionData.extensionPointVersion(),
-                    extensionPointData.version()
+    private PreloadReport preload(ForkJoinPool pool, List<Class<?>> extensionPoints) {
+        long start = System.nanoTime();
+        Duration[] extensionPointTimes = new Duration[extensionPoints.size()];
+        Map<String, Duration> extensionTimes = new ConcurrentHashMap<>();
+        Set<String> failedExtensions = ConcurrentHashMap.newKeySet();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < extensionPoints.size(); i++) {
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                extensionPointTimes[index] = preload(
+                    extensionPoints.get(index),
+                    extensionTimes,
+                    failedExtensions
                 );
+            }));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        Map<Class<?>, Duration> extensionPointReport = new LinkedHashMap<>();
+        for (int i = 0; i < extensionPoints.size(); i++) {
+            extensionPointReport.put(extensionPoints.get(i), extensionPointTimes[i]);
+        }
+        var report = new PreloadReport(
+            Duration.ofNanos(System.nanoTime() - start),
+            extensionPointReport,
+            extensionTimes,
+            failedExtensions
+        );
+        LOGGER.info("{}", report);
+        return report;
+    }
+
+
+    /*
+     * Resolve the extension point and then instantiate its global extensions
+     * in parallel, returning the time spent resolving it
+     */
+    private <T> Duration preload(
+        Class<T> extensionPoint,
+        Map<String, Duration> extensionTimes,
+        Set<String> failedExtensions
+    ) {
+        long start = System.nanoTime();
+        ResolvedExtensions<T> resolved = registry.resolve(extensionPoint);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (ExtensionDescriptor descriptor : resolved.extensions()) {
+            if (descriptor.metadata().scope() != ExtensionScope.GLOBAL) {
+                continue;
             }
-            this.invalidExtensions.get(extensionPoint).add(extension.getClass());
-            return false;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                long instantiationStart = System.nanoTime();
+                if (instantiate(descriptor, extensionPoint).isPresent()) {
+                    extensionTimes.put(
+                        descriptor.className(),
+                        Duration.ofNanos(System.nanoTime() - instantiationStart)
+                    );
+                } else {
+                    failedExtensions.add(descriptor.className());
+                }
+            }));
         }
+        ForkJoinTask.invokeAll(tasks);
+        return elapsed;
+    }
+
 
-        this.validExtensions.get(extensionPoint).add(extension.getClass());
-        return true;
+    private Executor asyncExecutor() {
+        Executor executor = registry.discoveryExecutor();
+        return executor != null ? executor : ForkJoinPool.commonPool();
     }
 
 
-    private <T> void removeOverridenExtensions(List<T> extensions) {
+    /*
+     * Whether the available extensions only change along with the registry,
+     * which is not the case when there are external loaders
+     */
+    boolean hasStableExtensions() {
+        return extensionLoaders.isEmpty();
+    }
 
-        List<T> overridableExtensions = extensions.stream()
-            .filter(extension -> getExtensionMetadata(extension).overridable())
-            .collect(Collectors.toList());
 
-        Map<String, T> overridableExtensionClassNames = overridableExtensions.stream()
-            .collect(
-                Collectors.toMap(
-                    extension -> extension.getClass().getCanonicalName(),
-                    Function.identity()
-                )
-            );
+    /*
+     * A number that changes whenever the available extensions or the cached
+     * instances of this manager may have changed
+     */
+    long extensionsVersion() {
+        // handles invoke it on each access, so it counts as using the session
+        session.touch();
+        // both numbers only increase, so the sum changes whenever any of them does
+        return registry.version() + session.releasedInstances();
+    }
 
-        for (T extension : new ArrayList<>(extensions)) {
-            Extension metadata = getExtensionMetadata(extension);
-            T overridable = overridableExtensionClassNames.get(metadata.overrides());
-            if (overridable != null) {
-                extensions.remove(overridable);
-                if (LOGGER.isInfoEnabled()) {
-                    LOGGER.info(
-                        "Extension {} overrides extension {}",
-                        id(getExtensionMetadata(extension)),
-                        id(getExtensionMetadata(overridable))
-                    );
-                }
-            }
+
+    <T> List<ExtensionDescriptor> validExtensions(Class<T> extensionPoint, ExtensionQuery query) {
+        return obtainValidExtensions(ExtensionLoadContext.all(sessionID, extensionPoint), query);
+    }
+
+
+    <T> Optional<T> instantiate(ExtensionDescriptor descriptor, Class<T> extensionPoint) {
+        session.touch();
+        return internalExtensionLoader.instantiate(descriptor, extensionPoint, sessionID);
+    }
+
+
+    private <T> Optional<ExtensionLease<T>> borrow(ExtensionDescriptor descriptor, Class<T> extensionPoint)
+    throws InterruptedException {
+        if (descriptor.instance() != null || descriptor.metadata().scope() != ExtensionScope.POOLED) {
+            return instantiate(descriptor, extensionPoint)
+                .map(instance -> new ExtensionLease<>(instance, null));
+        }
+        Class<?> extensionClass;
+        try {
+            extensionClass = descriptor.extensionClass();
+        } catch (ClassNotFoundException | LinkageError e) {
+            // the error is reported when instantiating it
+            return instantiate(descriptor, extensionPoint)
+                .map(instance -> new ExtensionLease<>(instance, null));
         }
+        ExtensionPool pool = pools.pool(extensionClass, pooledInstantiator(descriptor, extensionPoint));
+        Object instance = pool.borrow();
+        return instance == null ?
+            Optional.empty() :
+            Optional.of(new ExtensionLease<>(extensionPoint.cast(instance), pool));
+    }
+
+
+    /*
+     * Pools are shared by the manager and its sessions, so the instantiator
+     * must not retain any of them; otherwise the session that created the
+     * pool would never be collected. Pooled instances do not belong to any
+     * session, so no session identifier is required.
+     */
+    private static <T> Supplier<Object> pooledInstantiator(
+        ExtensionDescriptor descriptor,
+        Class<T> extensionPoint
+    ) {
+        return () -> internalExtensionLoader.instantiate(descriptor, extensionPoint, null).orElse(null);
+    }
+
+
+    private <T> Stream<T> loadAll(ExtensionLoadContext<T> context) {
+        return obtainValidExtensions(context).stream()
+            .filter(descriptor -> context.metadataCondition().test(descriptor.metadata()))
+            .map(descriptor -> instantiate(descriptor, context))
+            .flatMap(Optional::stream)
+            .filter(context.condition());
+    }
+
+
+    private <T> Optional<T> loadFirst(ExtensionLoadContext<T> context) {
+        return loadAll(context).findFirst();
+    }
+
+
+    private <T> Optional<T> instantiate(
+        ExtensionDescriptor descriptor,
+        ExtensionLoadContext<T> context
+    ) {
+        session.touch();
+        return internalExtensionLoader.instantiate(descriptor, context.extensionPoint(), sessionID);
     }
 
 
-    private boolean areCompatible(ExtensionPoint extensionPointData, Extension extensionData) {
-        ExtensionVersion extensionPointVersion = ExtensionVersion.of(extensionPointData.version());
+    /*
+     * Obtain the descriptors of the valid extensions, without overridden
+     * extensions and sorted by priority. Extensions provided by the built-in
+     * loader are not instantiated yet.
+     */
+    private <T> List<ExtensionDescriptor> obtainValidExtensions(ExtensionLoadContext<T> context) {
+        if (!Metrics.enabled()) {
+            return selectValidExtensions(context);
+        }
+        long start = System.nanoTime();
         try {
-            ExtensionVersion extensionDataPointVersion = ExtensionVersion.of(
-                extensionData.extensionPointVersion()
-            );
-            return extensionDataPointVersion.isCompatibleWith(extensionPointVersion);
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("Bad extensionPointVersion in {}", id(extensionData));
-            throw e;
+            return selectValidExtensions(context);
+        } finally {
+            Metrics.reporter().lookup(context.extensionPoint(), System.nanoTime() - start);
         }
     }
 
 
+    private <T> List<ExtensionDescriptor> selectValidExtensions(ExtensionLoadContext<T> context) {
 
-    private int getExtensionPriority(Object extension) {
-        return getExtensionMetadata(extension).priority();
+        // the same snapshot is used along the whole request
+        ExtensionRegistry.Snapshot snapshot = registry.snapshot();
+        if (extensionLoaders.isEmpty()) {
+            // built-in extensions are already validated and sorted
+            return snapshot.resolve(context.extensionPoint()).extensions();
+        }
+
+        List<ExtensionLoadContext<T>> externalContexts = new ArrayList<>();
+        for (ExtensionLoader extensionLoader : extensionLoaders) {
+            externalContexts.add(
+                context.withExternalLoader(snapshot.classLoaders(), extensionLoader)
+            );
+        }
+        List<Supplier<List<T>>> externalExtensions = loadExternalExtensions(externalContexts);
+
+        ResolvedExtensions<T> resolved = snapshot.resolve(context.extensionPoint());
+        List<ExtensionDescriptor> collectedExtensions = new ArrayList<>();
+        // results are always collected in the same order, so extensions with
+        // the same priority are sorted deterministically (the merge is stable)
+        for (int i = 0; i < externalContexts.size(); i++) {
+            collectValidExtensions(
+                externalContexts.get(i),
+                externalExtensions.get(i).get(),
+                resolved,
+                collectedExtensions
+            );
+        }
+        if (collectedExtensions.isEmpty()) {
+            return resolved.extensions();
+        }
+        List<ExtensionDescriptor> mergedExtensions = resolved.mergeByPriority(collectedExtensions);
+        ResolvedExtensions.removeOverridenExtensions(mergedExtensions, descriptor -> descriptor);
+        return mergedExtensions;
     }
-    
 
-    private <T> boolean hasBeenValidated(Class<T> extensionPoint, T extension) {
-        return validExtensions.get(extensionPoint).contains(extension.getClass());
+
+    /*
+     * Obtain the descriptors of the valid extensions that satisfy the query.
+     * The built-in extensions are selected using the indexes of the resolved
+     * extension point; extensions from external loaders have to be checked
+     * one by one.
+     */
+    private <T> List<ExtensionDescriptor> obtainValidExtensions(
+        ExtensionLoadContext<T> context,
+        ExtensionQuery query
+    ) {
+        if (extensionLoaders.isEmpty()) {
+            if (!Metrics.enabled()) {
+                return registry.resolve(context.extensionPoint()).select(query);
+            }
+            long start = System.nanoTime();
+            try {
+                return registry.resolve(context.extensionPoint()).select(query);
+            } finally {
+                Metrics.reporter().lookup(context.extensionPoint(), System.nanoTime() - start);
+            }
+        }
+        return obtainValidExtensions(context).stream()
+            .filter(descriptor -> query.matches(descriptor.metadata()))
+            .collect(Collectors.toList());
     }
 
 
-    private <T> boolean hasBeenInvalidated(Class<T> extensionPoint, T extension) {
-        return invalidExtensions.get(extensionPoint).contains(extension.getClass());
+    /*
+     * Query the external loaders. If parallel discovery is enabled, the
+     * loaders are queried concurrently, while the current thread goes on
+     * resolving the built-in extensions
+     */
+    private <T> List<Supplier<List<T>>> loadExternalExtensions(
+        List<ExtensionLoadContext<T>> externalContexts
+    ) {
+        Executor executor = registry.discoveryExecutor();
+        List<Supplier<List<T>>> externalExtensions = new ArrayList<>();
+        for (ExtensionLoadContext<T> externalContext : externalContexts) {
+            if (executor == null) {
+                externalExtensions.add(() -> load(externalContext));
+            } else {
+                var loaded = CompletableFuture.supplyAsync(() -> load(externalContext), executor);
+                externalExtensions.add(() -> Futures.join(loaded));
+            }
+        }
+        return externalExtensions;
     }
 
 
-    private Comparator<Object> sortByPriority() {
-        return Comparator.comparingInt(this::getExtensionPriority);
+    private <T> List<T> load(ExtensionLoadContext<T> context) {
+        LOGGER.debug("{} :: Searching...", context);
+        if (!Metrics.enabled()) {
+            return context.load();
+        }
+        long start = System.nanoTime();
+        try {
+            return context.load();
+        } finally {
+            Metrics.reporter().externalLoad(
+                context.extensionLoader(),
+                context.extensionPoint(),
+                System.nanoTime() - start
+            );
+        }
     }
 
 
-    private static String id(Extension extension) {
-        return extension.provider() + ":" + extension.name() + ":" + extension.version();
+    /*
+     * Resolve the extensions of an extension point for the fast path, where
+     * it is the whole lookup
+     */
+    private <T> ResolvedExtensions<T> resolve(Class<T> extensionPoint) {
+        if (!Metrics.enabled()) {
+            return registry.resolve(extensionPoint);
+        }
+        long start = System.nanoTime();
+        try {
+            return registry.resolve(extensionPoint);
+        } finally {
+            Metrics.reporter().lookup(extensionPoint, System.nanoTime() - start);
+        }
     }
 
 
-    private static List<ExtensionLoader> extensionLoaders() {
+    private <T> void collectValidExtensions(
+        ExtensionLoadContext<T> context,
+        List<T> extensions,
+        ResolvedExtensions<T> resolved,
+        List<ExtensionDescriptor> collectedExtensions
+    ) {
+        for (T extension : extensions) {
+            var descriptor = ExtensionDescriptor.ofInstance(extension);
+            if (resolved.isValid(descriptor, context.isExternallyManaged())) {
+                collectedExtensions.add(descriptor);
+            }
+        }
+    }
+
+
+    private static List<ExtensionLoader> sessionLoaders(List<ExtensionLoader> extensionLoaders) {
         List<ExtensionLoader> loaders = new ArrayList<>();
-        ServiceLoader.load(ExtensionLoader.class).forEach(loaders::add);
-        return loaders;
+        loaders.add(builtInExtensionLoader);
+        loaders.addAll(extensionLoaders);
+        return List.copyOf(loaders);
     }
 
 
-    private static Predicate<Extension> identifier(String provider, String name, String version) {
-        return extension ->
-            extension.provider().equalsIgnoreCase(provider) &&
-            extension.name().equalsIgnoreCase(name) &&
-            ExtensionVersion.of(extension.version()).isCompatibleWith(ExtensionVersion.of(version))
-        ;
+    private static List<ExtensionLoader> extensionLoaders() {
+        List<ExtensionLoader> loaders = new ArrayList<>();
+        ServiceLoader.load(ExtensionLoader.class).forEach(loaders::add);
+        return List.copyOf(loaders);
     }
 
 
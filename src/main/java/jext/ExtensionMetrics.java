@@ -0,0 +1,91 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+/**
+ * This interface allows third-party contributors to collect metrics about
+ * the extension managers, for example, in order to publish them using a
+ * monitoring library.
+ * <p>
+ * Implementations are discovered using the {@link java.util.ServiceLoader}
+ * once, the first time any extension manager is used. When no implementation
+ * is present, no metric is measured at all, so there is no overhead.
+ * <p>
+ * Every method has an empty default implementation, so implementations only
+ * have to override the metrics they are interested in. Methods are invoked
+ * from the threads performing the measured operations, so implementations
+ * must be thread-safe, fast, and must not throw exceptions. Times are
+ * expressed in nanoseconds.
+ */
+public interface ExtensionMetrics {
+
+    /**
+     * An extension manager has selected the valid extensions of an
+     * extension point, querying the external loaders if required but
+     * without creating any instance
+     * @param extensionPoint The extension point type
+     * @param nanos The elapsed time
+     */
+    default void lookup(Class<?> extensionPoint, long nanos) {
+        // no metric by default
+    }
+
+
+    /**
+     * A class loader has been scanned in order to discover the extensions of
+     * an extension point. Scans are cached, so this happens only the first
+     * time each class loader is used for each extension point.
+     * @param extensionPoint The extension point type
+     * @param classLoader The scanned class loader
+     * @param nanos The elapsed time
+     */
+    default void scan(Class<?> extensionPoint, ClassLoader classLoader, long nanos) {
+        // no metric by default
+    }
+
+
+    /**
+     * The resolved extensions of an extension point have been requested
+     * @param extensionPoint The extension point type
+     * @param cached Whether they were already resolved (a cache hit) or
+     * they had to be discovered and validated (a cache miss)
+     */
+    default void resolution(Class<?> extensionPoint, boolean cached) {
+        // no metric by default
+    }
+
+
+    /**
+     * A new instance of an extension has been created by the built-in loader
+     * @param extensionClass The extension class
+     * @param nanos The elapsed time
+     */
+    default void instantiation(Class<?> extensionClass, long nanos) {
+        // no metric by default
+    }
+
+
+    /**
+     * An external extension loader has been queried
+     * @param extensionLoader The external loader
+     * @param extensionPoint The extension point type
+     * @param nanos The elapsed time
+     */
+    default void externalLoad(ExtensionLoader extensionLoader, Class<?> extensionPoint, long nanos) {
+        // no metric by default
+    }
+
+
+    /**
+     * The number of live sessions has changed
+     * @param liveSessions The number of sessions neither closed nor garbage
+     * collected yet
+     * @see ExtensionManager#sessionStatistics()
+     */
+    default void liveSessions(long liveSessions) {
+        // no metric by default
+    }
+
+}
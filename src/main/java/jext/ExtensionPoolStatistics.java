@@ -0,0 +1,109 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.time.Duration;
+
+
+/**
+ * Counters of the pool of a {@link ExtensionScope#POOLED} extension class,
+ * useful to size the pool under load.
+ *
+ * @see ExtensionManager#poolStatistics()
+ * @see ExtensionManager#withExtensionPool(Class, int, int)
+ */
+public final class ExtensionPoolStatistics {
+
+    private final int minSize;
+    private final int maxSize;
+    private final int inUse;
+    private final int idle;
+    private final long created;
+    private final long borrowed;
+    private final long waits;
+    private final Duration waitTime;
+
+
+    ExtensionPoolStatistics(
+        int minSize,
+        int maxSize,
+        int inUse,
+        int idle,
+        long created,
+        long borrowed,
+        long waits,
+        Duration waitTime
+    ) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.inUse = inUse;
+        this.idle = idle;
+        this.created = created;
+        this.borrowed = borrowed;
+        this.waits = waits;
+        this.waitTime = waitTime;
+    }
+
+
+    public int minSize() {
+        return minSize;
+    }
+
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+
+    /** @return The number of instances currently borrowed */
+    public int inUse() {
+        return inUse;
+    }
+
+
+    /** @return The number of instances currently available */
+    public int idle() {
+        return idle;
+    }
+
+
+    /** @return The number of instances created by the pool */
+    public long created() {
+        return created;
+    }
+
+
+    /** @return The number of instances borrowed */
+    public long borrowed() {
+        return borrowed;
+    }
+
+
+    /** @return The number of borrowings that had to wait for an instance to be returned */
+    public long waits() {
+        return waits;
+    }
+
+
+    /** @return The total time spent by borrowers waiting for an instance */
+    public Duration waitTime() {
+        return waitTime;
+    }
+
+
+    /** @return The fraction of the maximum size currently in use, between 0 and 1 */
+    public double utilization() {
+        return (double) inUse / maxSize;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ExtensionPoolStatistics[min=" + minSize + ", max=" + maxSize +
+            ", inUse=" + inUse + ", idle=" + idle + ", created=" + created +
+            ", borrowed=" + borrowed + ", waits=" + waits + ", waitTime=" + waitTime + "]";
+    }
+
+}
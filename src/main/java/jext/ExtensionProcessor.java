@@ -7,6 +7,7 @@ package jext;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -17,33 +18,48 @@ import java.util.Map.Entry;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.ModuleElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
+import jext.internal.ExtensionIndexFormat;
+
 /**
- * An extension processor that validate and publish the provided extensions
+ * An extension processor that validate and publish the provided extensions.
+ * <p>
+ * Besides the service declarations, it generates the metadata index
+ * {@value ExtensionIndexFormat#RESOURCE}, so the extension manager can inspect the
+ * extensions without loading their classes, and a factory class for each
+ * extension, so they can be instantiated without using reflection.
  */
 @SupportedAnnotationTypes("jext.Extension")
 @SupportedSourceVersion(SourceVersion.RELEASE_11)
 public class ExtensionProcessor extends AbstractProcessor {
 
+    private static final String FACTORY_SUFFIX = "_JextFactory";
+
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
         Map<String, List<String>> serviceImplementations = new LinkedHashMap<>();
+        List<String> indexEntries = new ArrayList<>();
         for (Element extensionElement : roundEnv.getElementsAnnotatedWith(Extension.class)) {
             if (validateElementKindIsClass(extensionElement)) {
                 validateAndRegisterExtension(
-                    (TypeElement) extensionElement, serviceImplementations
+                    (TypeElement) extensionElement, serviceImplementations, indexEntries
                 );
             }
         }
@@ -52,6 +68,7 @@ public class ExtensionProcessor extends AbstractProcessor {
             validateExtensionPoint(extensionPointElement);
         }
         writeMetaInfServiceDeclarations(serviceImplementations);
+        writeMetaInfIndex(indexEntries);
         return false;
     }
 
@@ -77,7 +94,8 @@ public class ExtensionProcessor extends AbstractProcessor {
 
     private void validateAndRegisterExtension(
         TypeElement extensionElement,
-        Map<String, List<String>> serviceImplementations
+        Map<String, List<String>> serviceImplementations,
+        List<String> indexEntries
     ) {
 
         boolean ignore;
@@ -123,6 +141,14 @@ public class ExtensionProcessor extends AbstractProcessor {
             serviceImplementations
                 .computeIfAbsent(extensionPointName, x -> new ArrayList<>())
                 .add(extensionName);
+            indexEntries.add(ExtensionIndexFormat.line(
+                extensionPointName,
+                extensionInfo.extensionPointElement.getAnnotation(ExtensionPoint.class).version(),
+                processingEnv.getElementUtils().getBinaryName(extensionElement).toString(),
+                extensionName,
+                extensionAnnotation,
+                writeFactory(extensionInfo)
+            ));
         }
 
     }
@@ -262,6 +288,93 @@ public class ExtensionProcessor extends AbstractProcessor {
     }
 
 
+    /*
+     * Generate a factory class that creates new instances of the extension
+     * invoking directly its constructor, returning the name of the generated
+     * class or null if the extension has no public constructor without arguments
+     * (or it declares checked exceptions)
+     */
+    private String writeFactory(ExtensionInfo extensionInfo) {
+        TypeElement extensionElement = extensionInfo.extensionElement;
+        if (!hasPublicDefaultConstructor(extensionElement)) {
+            return null;
+        }
+        var elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(extensionElement).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(extensionElement).toString();
+        String factorySimpleName = (packageName.isEmpty() ?
+            binaryName :
+            binaryName.substring(packageName.length() + 1)
+        ).replace('$', '_') + FACTORY_SUFFIX;
+        String factoryName = packageName.isEmpty() ?
+            factorySimpleName :
+            packageName + "." + factorySimpleName;
+        // the factory may exist already if the processor is executed more than once
+        if (elements.getTypeElement(factoryName) != null) {
+            return factoryName;
+        }
+        String diamond = extensionElement.getTypeParameters().isEmpty() ? "" : "<>";
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler()
+                .createSourceFile(factoryName, extensionElement);
+            try (Writer writer = sourceFile.openWriter()) {
+                if (!packageName.isEmpty()) {
+                    writer.append("package ").append(packageName).append(";\n\n");
+                }
+                writer
+                .append("/** Factory of {@link ").append(extensionInfo.extensionName)
+                .append("} generated by jExt */\n")
+                .append("public final class ").append(factorySimpleName)
+                .append(" implements java.util.function.Supplier<Object> {\n\n")
+                .append("    @Override\n")
+                .append("    public Object get() {\n")
+                .append("        return new ").append(extensionInfo.extensionName)
+                .append(diamond).append("();\n")
+                .append("    }\n\n")
+                .append("}\n");
+            }
+            log(Kind.NOTE, "[jext] :: Generated extension factory {}", factoryName);
+            return factoryName;
+        } catch (FilerException e) {
+            // already generated in this compilation
+            return factoryName;
+        } catch (IOException e) {
+            log(Kind.ERROR, "UNEXPECTED ERROR: {}", e.toString());
+            return null;
+        }
+    }
+
+
+    private boolean hasPublicDefaultConstructor(TypeElement extensionElement) {
+        for (Element element = extensionElement;
+            element.getKind().isClass();
+            element = element.getEnclosingElement()
+        ) {
+            if (element.getModifiers().contains(Modifier.PRIVATE) ||
+                element.getModifiers().contains(Modifier.ABSTRACT) && element == extensionElement ||
+                element.getEnclosingElement().getKind().isClass() &&
+                !element.getModifiers().contains(Modifier.STATIC)
+            ) {
+                return false;
+            }
+        }
+        return ElementFilter.constructorsIn(extensionElement.getEnclosedElements()).stream()
+            .anyMatch(constructor ->
+                constructor.getParameters().isEmpty() &&
+                constructor.getModifiers().contains(Modifier.PUBLIC) &&
+                constructor.getThrownTypes().stream().noneMatch(this::isCheckedException)
+            );
+    }
+
+
+    private boolean isCheckedException(TypeMirror type) {
+        var types = processingEnv.getTypeUtils();
+        var elements = processingEnv.getElementUtils();
+        return !types.isSubtype(type, elements.getTypeElement(RuntimeException.class.getName()).asType()) &&
+            !types.isSubtype(type, elements.getTypeElement(Error.class.getName()).asType());
+    }
+
+
     private void writeMetaInfServiceDeclarations(Map<String,List<String>> serviceImplementations) {
         Filer filer = this.processingEnv.getFiler();
         for (Entry<String, List<String>> mapEntry : serviceImplementations.entrySet()) {
@@ -298,6 +411,42 @@ public class ExtensionProcessor extends AbstractProcessor {
 
 
 
+    private void writeMetaInfIndex(List<String> indexEntries) {
+        if (indexEntries.isEmpty()) {
+            return;
+        }
+        Filer filer = this.processingEnv.getFiler();
+        try {
+            FileObject resourceFile = filer
+                .getResource(StandardLocation.CLASS_OUTPUT, "", ExtensionIndexFormat.RESOURCE);
+            List<String> oldEntries = resourceFile.getLastModified() == 0 ?
+                List.of() :
+                readLines(resourceFile)
+            ;
+            // entries of the same extension are replaced by the new ones
+            Map<String, String> allEntries = new LinkedHashMap<>();
+            for (String entry : oldEntries) {
+                String key = ExtensionIndexFormat.keyOf(entry);
+                if (key != null) {
+                    allEntries.put(key, entry);
+                }
+            }
+            for (String entry : indexEntries) {
+                allEntries.put(ExtensionIndexFormat.keyOf(entry), entry);
+            }
+            Set<String> lines = new LinkedHashSet<>();
+            lines.add(ExtensionIndexFormat.HEADER);
+            lines.addAll(allEntries.values());
+            resourceFile = filer
+                .createResource(StandardLocation.CLASS_OUTPUT, "", ExtensionIndexFormat.RESOURCE);
+            writeLines(lines, resourceFile);
+            log(Kind.NOTE, "[jext] :: Generated extension index file {}", resourceFile.getName());
+        } catch (IOException e) {
+            log(Kind.ERROR, "UNEXPECTED ERROR: {}", e.toString());
+        }
+    }
+
+
     private List<String> readLines(FileObject resourceFile) {
         List<String> lines = new ArrayList<>();
         try {
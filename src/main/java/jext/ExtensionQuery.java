@@ -0,0 +1,252 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.Locale;
+import java.util.Objects;
+
+import jext.internal.ExtensionVersion;
+
+
+/**
+ * Structured criteria to select extensions according their metadata.
+ * <p>
+ * Unlike an arbitrary <tt>Predicate&lt;Extension&gt;</tt>, queries can be
+ * answered by the {@link ExtensionManager} using indexes on the provider and
+ * name of the extensions, and the results of each query are cached per
+ * extension point until the extensions are resolved again. Queries are
+ * immutable and can be reused freely; each criterion method returns a new
+ * query.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * extensionManager.getExtension(
+ *     MyExtensionPoint.class,
+ *     ExtensionQuery.any().provider("my-org").name("my-extension").version("1.2")
+ * );
+ * }</pre>
+ * Provider and name are compared ignoring case.
+ */
+public final class ExtensionQuery {
+
+    private static final ExtensionQuery ANY = new ExtensionQuery(
+        null, null, null, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE
+    );
+
+
+    /**
+     * @return A query that selects every extension
+     */
+    public static ExtensionQuery any() {
+        return ANY;
+    }
+
+
+    private final String provider;
+    private final String name;
+    private final ExtensionVersion minVersion;
+    private final ExtensionVersion maxVersion;
+    private final ExtensionScope scope;
+    private final int minPriority;
+    private final int maxPriority;
+
+
+    private ExtensionQuery(
+        String provider,
+        String name,
+        ExtensionVersion minVersion,
+        ExtensionVersion maxVersion,
+        ExtensionScope scope,
+        int minPriority,
+        int maxPriority
+    ) {
+        this.provider = provider;
+        this.name = name;
+        this.minVersion = minVersion;
+        this.maxVersion = maxVersion;
+        this.scope = scope;
+        this.minPriority = minPriority;
+        this.maxPriority = maxPriority;
+    }
+
+
+    /**
+     * Select only extensions of the given provider
+     * @throws NullPointerException if the provider is <code>null</code>
+     */
+    public ExtensionQuery provider(String provider) {
+        return new ExtensionQuery(
+            normalize(provider), name, minVersion, maxVersion, scope, minPriority, maxPriority
+        );
+    }
+
+
+    /**
+     * Select only extensions with the given name
+     * @throws NullPointerException if the name is <code>null</code>
+     */
+    public ExtensionQuery name(String name) {
+        return new ExtensionQuery(
+            provider, normalize(name), minVersion, maxVersion, scope, minPriority, maxPriority
+        );
+    }
+
+
+    /**
+     * Select only extensions with a version compatible with the given one;
+     * that is, with the same major version and an equal or higher minor
+     * version
+     * @throws NullPointerException if the version is <code>null</code>
+     * @throws IllegalArgumentException if the version is not valid
+     */
+    public ExtensionQuery version(String version) {
+        var parsedVersion = ExtensionVersion.of(Objects.requireNonNull(version));
+        return new ExtensionQuery(
+            provider,
+            name,
+            parsedVersion,
+            ExtensionVersion.of((parsedVersion.major() + 1) + ".0"),
+            scope,
+            minPriority,
+            maxPriority
+        );
+    }
+
+
+    /**
+     * Select only extensions with a version within the given range
+     * @param minVersion The minimum version (inclusive)
+     * @param maxVersion The maximum version (exclusive)
+     * @throws NullPointerException if any version is <code>null</code>
+     * @throws IllegalArgumentException if any version is not valid
+     */
+    public ExtensionQuery versionRange(String minVersion, String maxVersion) {
+        return new ExtensionQuery(
+            provider,
+            name,
+            ExtensionVersion.of(Objects.requireNonNull(minVersion)),
+            ExtensionVersion.of(Objects.requireNonNull(maxVersion)),
+            scope,
+            minPriority,
+            maxPriority
+        );
+    }
+
+
+    /**
+     * Select only extensions with the given scope
+     */
+    public ExtensionQuery scope(ExtensionScope scope) {
+        return new ExtensionQuery(
+            provider, name, minVersion, maxVersion, Objects.requireNonNull(scope), minPriority, maxPriority
+        );
+    }
+
+
+    /**
+     * Select only extensions with a priority within the given bounds
+     * @param minPriority The minimum priority value (inclusive)
+     * @param maxPriority The maximum priority value (inclusive)
+     * @throws IllegalArgumentException if the bounds are not consistent
+     */
+    public ExtensionQuery priorityBetween(int minPriority, int maxPriority) {
+        if (minPriority > maxPriority) {
+            throw new IllegalArgumentException(
+                "Not valid priority bounds [" + minPriority + "," + maxPriority + "]"
+            );
+        }
+        return new ExtensionQuery(
+            provider, name, minVersion, maxVersion, scope, minPriority, maxPriority
+        );
+    }
+
+
+    /**
+     * @return The provider to select, in lower case, or <code>null</code> if
+     * the query does not restrict the provider
+     */
+    public String provider() {
+        return provider;
+    }
+
+
+    /**
+     * @return The name to select, in lower case, or <code>null</code> if the
+     * query does not restrict the name
+     */
+    public String name() {
+        return name;
+    }
+
+
+    /**
+     * Check whether the given extension metadata satisfies the query. An
+     * extension whose version is not valid does not satisfy any version
+     * criterion.
+     */
+    public boolean matches(Extension extension) {
+        if (provider != null && !provider.equalsIgnoreCase(extension.provider())) {
+            return false;
+        }
+        if (name != null && !name.equalsIgnoreCase(extension.name())) {
+            return false;
+        }
+        if (scope != null && scope != extension.scope()) {
+            return false;
+        }
+        if (extension.priority() < minPriority || extension.priority() > maxPriority) {
+            return false;
+        }
+        if (minVersion != null) {
+            ExtensionVersion version;
+            try {
+                version = ExtensionVersion.of(extension.version());
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            return version.compareTo(minVersion) >= 0 && version.compareTo(maxVersion) < 0;
+        }
+        return true;
+    }
+
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof ExtensionQuery)) {
+            return false;
+        }
+        var other = (ExtensionQuery) object;
+        return Objects.equals(provider, other.provider) &&
+            Objects.equals(name, other.name) &&
+            Objects.equals(minVersion, other.minVersion) &&
+            Objects.equals(maxVersion, other.maxVersion) &&
+            scope == other.scope &&
+            minPriority == other.minPriority &&
+            maxPriority == other.maxPriority;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(provider, name, minVersion, maxVersion, scope, minPriority, maxPriority);
+    }
+
+
+    @Override
+    public String toString() {
+        return "ExtensionQuery[provider=" + provider + ", name=" + name +
+            ", version=[" + minVersion + "," + maxVersion + "), scope=" + scope +
+            ", priority=[" + minPriority + "," + maxPriority + "]]";
+    }
+
+
+    private static String normalize(String value) {
+        return Objects.requireNonNull(value).toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -17,5 +17,20 @@ public enum ExtensionScope {
     LOCAL,
 
     /** Keep a single instance per session */
-    SESSION
+    SESSION,
+
+    /**
+     * Keep a single instance per thread and session, suitable for extensions
+     * that are not thread-safe. Instances of terminated threads are reused
+     * by new threads, so short-lived threads (like virtual threads) do not
+     * create a new instance each.
+     */
+    THREAD,
+
+    /**
+     * Keep a pool of instances per extension manager, borrowed for exclusive
+     * use with {@link ExtensionManager#borrowExtension(Class)}. Regular
+     * lookups create a new instance each time, as {@link #LOCAL}.
+     */
+    POOLED
 }
@@ -0,0 +1,237 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.internal.PluginClassLoader;
+
+
+/**
+ * A directory of plugin jars watched by an {@link ExtensionManager}.
+ * <p>
+ * Each jar is loaded using its own {@link PluginClassLoader}. Changes in the
+ * directory are detected by means of a {@link WatchService}; when a jar is
+ * added, modified or removed, its class loader is added, replaced or removed
+ * from the extension manager, respectively.
+ * <p>
+ * Closing the plugin directory stops watching it and removes all its
+ * plugins from the extension manager.
+ * @see ExtensionManager#watchPluginDirectory(Path)
+ */
+public final class PluginDirectory implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginDirectory.class);
+    private static final String JAR_EXTENSION = ".jar";
+
+    private final ExtensionManager extensionManager;
+    private final Path directory;
+    private final ClassLoader parent;
+    private final Map<Path, Plugin> plugins = new LinkedHashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+    private boolean closed;
+
+
+    PluginDirectory(ExtensionManager extensionManager, Path directory, ClassLoader parent) {
+        this.extensionManager = extensionManager;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.parent = parent;
+    }
+
+
+    synchronized void start() throws IOException {
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(
+            watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+        refresh();
+        this.watcher = new Thread(this::watch, "jext-plugins-" + directory.getFileName());
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+
+    /** @return The watched directory */
+    public Path directory() {
+        return directory;
+    }
+
+
+    /**
+     * @return The jar files of the plugins currently loaded
+     */
+    public synchronized List<Path> plugins() {
+        return List.copyOf(plugins.keySet());
+    }
+
+
+    /**
+     * Check the content of the directory right now, loading the new or
+     * modified plugins and unloading the removed ones. Usually there is no
+     * need to invoke this method, since changes are detected automatically;
+     * however, some file systems may notify the changes with a noticeable
+     * delay.
+     *
+     * @throws IOException If the directory cannot be read
+     */
+    public synchronized void refresh() throws IOException {
+        if (closed) {
+            return;
+        }
+        Map<Path, BasicFileAttributes> jars = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                if (file.getFileName().toString().endsWith(JAR_EXTENSION)) {
+                    readAttributes(file).ifPresent(attributes -> jars.put(file, attributes));
+                }
+            }
+        }
+
+        List<Plugin> removed = new ArrayList<>();
+        for (Plugin plugin : plugins.values()) {
+            var attributes = jars.get(plugin.jar);
+            if (attributes == null || !plugin.isSameVersion(attributes)) {
+                removed.add(plugin);
+            }
+        }
+        List<Plugin> added = new ArrayList<>();
+        for (var jar : jars.entrySet()) {
+            var plugin = plugins.get(jar.getKey());
+            if (plugin == null || removed.contains(plugin)) {
+                try {
+                    added.add(new Plugin(jar.getKey(), jar.getValue(), parent));
+                } catch (RuntimeException e) {
+                    // the jar may be still being written, it is retried on the next refresh
+                    LOGGER.warn("Plugin {} skipped [error was: {}]", jar.getKey(), e.toString());
+                }
+            }
+        }
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+
+        removed.forEach(plugin -> plugins.remove(plugin.jar));
+        added.forEach(plugin -> plugins.put(plugin.jar, plugin));
+        extensionManager.updatePluginClassLoaders(classLoadersOf(added), classLoadersOf(removed));
+        removed.forEach(Plugin::close);
+        if (LOGGER.isInfoEnabled()) {
+            removed.forEach(plugin -> LOGGER.info("Plugin {} unloaded", plugin.jar));
+            added.forEach(plugin -> LOGGER.info("Plugin {} loaded", plugin.jar));
+        }
+    }
+
+
+    /**
+     * Stop watching the directory and unload all the plugins
+     */
+    @Override
+    public void close() throws IOException {
+        List<Plugin> removed;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            removed = new ArrayList<>(plugins.values());
+            plugins.clear();
+            extensionManager.updatePluginClassLoaders(List.of(), classLoadersOf(removed));
+        }
+        removed.forEach(Plugin::close);
+        // closing the watch service makes the watcher thread finish
+        watchService.close();
+    }
+
+
+    private void watch() {
+        try {
+            WatchKey key;
+            do {
+                key = watchService.take();
+                key.pollEvents();
+                try {
+                    refresh();
+                } catch (IOException e) {
+                    LOGGER.error("Cannot read plugin directory {}", directory, e);
+                }
+            } while (key.reset());
+        } catch (ClosedWatchServiceException e) {
+            // the plugin directory has been closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static Optional<BasicFileAttributes> readAttributes(Path file) {
+        try {
+            return Optional.of(Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException e) {
+            // the file may have been removed meanwhile
+            return Optional.empty();
+        }
+    }
+
+
+    private static List<ClassLoader> classLoadersOf(List<Plugin> plugins) {
+        return plugins.stream().map(plugin -> plugin.classLoader).collect(Collectors.toList());
+    }
+
+
+    @Override
+    public String toString() {
+        return "PluginDirectory[" + directory + "]";
+    }
+
+
+    private static final class Plugin {
+
+        private final Path jar;
+        private final long size;
+        private final FileTime lastModified;
+        private final PluginClassLoader classLoader;
+
+        private Plugin(Path jar, BasicFileAttributes attributes, ClassLoader parent) {
+            this.jar = jar;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime();
+            try {
+                // fail early on incomplete or corrupt jars
+                new JarFile(jar.toFile()).close();
+                this.classLoader = new PluginClassLoader(jar, parent);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid plugin jar " + jar, e);
+            }
+        }
+
+
+        private boolean isSameVersion(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+        }
+
+
+        private void close() {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot close class loader of plugin {} [error was: {}]", jar, e.toString());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.time.Duration;
+import java.util.*;
+
+
+/**
+ * Summary of a warm-up performed using {@link ExtensionManager#preload}: how
+ * long it took to resolve each extension point and to create the instance of
+ * each {@link ExtensionScope#GLOBAL} extension.
+ */
+public final class PreloadReport {
+
+    private final Duration totalTime;
+    private final Map<Class<?>, Duration> extensionPoints;
+    private final Map<String, Duration> extensions;
+    private final Set<String> failedExtensions;
+
+
+    PreloadReport(
+        Duration totalTime,
+        Map<Class<?>, Duration> extensionPoints,
+        Map<String, Duration> extensions,
+        Set<String> failedExtensions
+    ) {
+        this.totalTime = totalTime;
+        this.extensionPoints = Collections.unmodifiableMap(new LinkedHashMap<>(extensionPoints));
+        this.extensions = Collections.unmodifiableMap(new TreeMap<>(extensions));
+        this.failedExtensions = Collections.unmodifiableSet(new TreeSet<>(failedExtensions));
+    }
+
+
+    /**
+     * @return The elapsed time of the whole warm-up
+     */
+    public Duration totalTime() {
+        return totalTime;
+    }
+
+
+    /**
+     * @return The time spent discovering and validating each extension point
+     */
+    public Map<Class<?>, Duration> extensionPoints() {
+        return extensionPoints;
+    }
+
+
+    /**
+     * @return The time spent creating the instance of each global extension,
+     * by extension class name
+     */
+    public Map<String, Duration> extensions() {
+        return extensions;
+    }
+
+
+    /**
+     * @return The class names of the global extensions that could not be
+     * instantiated
+     */
+    public Set<String> failedExtensions() {
+        return failedExtensions;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Preloaded " + extensionPoints.size() + " extension point(s) and " +
+            extensions.size() + " global extension(s) in " + totalTime.toMillis() + " ms" +
+            (failedExtensions.isEmpty() ? "" : "; failed extensions: " + failedExtensions);
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+/**
+ * Counters of the sessions of every {@link ExtensionManager} (each manager,
+ * including those created with {@link ExtensionManager#newSession()}, is a
+ * session).
+ *
+ * @see ExtensionManager#sessionStatistics()
+ */
+public final class SessionStatistics {
+
+    private final long live;
+    private final long closed;
+    private final long collected;
+    private final long expired;
+
+
+    SessionStatistics(long live, long closed, long collected, long expired) {
+        this.live = live;
+        this.closed = closed;
+        this.collected = collected;
+        this.expired = expired;
+    }
+
+
+    /** @return The number of sessions neither closed nor garbage collected yet */
+    public long live() {
+        return live;
+    }
+
+
+    /** @return The number of sessions closed explicitly */
+    public long closed() {
+        return closed;
+    }
+
+
+    /**
+     * @return The number of sessions released automatically because their
+     * manager was no longer reachable
+     */
+    public long collected() {
+        return collected;
+    }
+
+
+    /**
+     * @return The number of times the instances of an idle session have been
+     * released because of its idle timeout
+     */
+    public long expired() {
+        return expired;
+    }
+
+
+    @Override
+    public String toString() {
+        return "SessionStatistics[live=" + live + ", closed=" + closed +
+            ", collected=" + collected + ", expired=" + expired + "]";
+    }
+
+}
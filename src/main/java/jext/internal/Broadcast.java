@@ -0,0 +1,89 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import jext.BroadcastException;
+import jext.BroadcastPolicy;
+
+
+/**
+ * Concurrent invocation of a function over a list of extensions. Results are
+ * returned in the same order as the extensions, regardless the order in
+ * which the invocations complete.
+ */
+public final class Broadcast {
+
+    private Broadcast() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * Invoke the function over every extension using the given executor, and
+     * wait for the results
+     * @throws BroadcastException if any invocation fails
+     */
+    public static <T, R> List<R> invoke(
+        List<T> extensions,
+        Function<? super T, ? extends R> function,
+        Executor executor,
+        BroadcastPolicy policy
+    ) {
+        List<CompletableFuture<R>> invocations = new ArrayList<>(extensions.size());
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (T extension : extensions) {
+            CompletableFuture<R> invocation = CompletableFuture.supplyAsync(
+                () -> function.apply(extension),
+                executor
+            );
+            if (policy == BroadcastPolicy.FAIL_FAST) {
+                invocation.whenComplete((result, error) -> {
+                    if (error != null) {
+                        firstFailure.completeExceptionally(error);
+                    }
+                });
+            }
+            invocations.add(invocation);
+        }
+        var all = CompletableFuture.allOf(invocations.toArray(new CompletableFuture<?>[0]));
+        // failures are reported afterwards, with the rest of results
+        CompletableFuture.anyOf(all, firstFailure).handle((result, error) -> null).join();
+        if (firstFailure.isCompletedExceptionally()) {
+            // invocations not started yet would not run
+            invocations.forEach(invocation -> invocation.cancel(false));
+        }
+        return collect(invocations);
+    }
+
+
+    private static <R> List<R> collect(List<CompletableFuture<R>> invocations) {
+        List<R> results = new ArrayList<>(invocations.size());
+        List<Throwable> errors = new ArrayList<>();
+        for (CompletableFuture<R> invocation : invocations) {
+            // using the fail-fast policy, some invocations may be cancelled
+            // or still running after a failure
+            if (!invocation.isDone() || invocation.isCancelled()) {
+                continue;
+            }
+            try {
+                results.add(invocation.join());
+            } catch (CompletionException e) {
+                errors.add(Futures.unwrap(e));
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new BroadcastException(results, errors);
+        }
+        return results;
+    }
+
+}
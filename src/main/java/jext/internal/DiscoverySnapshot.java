@@ -0,0 +1,326 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.Extension;
+import jext.ExtensionScope;
+
+
+/**
+ * Persistent snapshot of the resolved extension points, so they do not have
+ * to be discovered again when the application starts.
+ * <p>
+ * The snapshot is a compact binary file that contains, for each extension
+ * point, the ordered list of its extensions along with their metadata. It is
+ * bound to a fingerprint of the contents of the class loaders (the path,
+ * size and modification time of every jar and class directory), so it is
+ * considered stale as soon as any of them changes. Checking the fingerprint
+ * only requires reading file attributes; no class is loaded at all.
+ * <p>
+ * Only {@link URLClassLoader}s, the application class loader and the
+ * platform class loader (and any chain of them) can be fingerprinted. For
+ * any other class loader, snapshots are never considered valid.
+ */
+public final class DiscoverySnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscoverySnapshot.class);
+
+    private static final int MAGIC = 0x4A455854; // "JEXT"
+    private static final int FORMAT_VERSION = 1;
+
+
+    private DiscoverySnapshot() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * Write a snapshot of the given resolved extension points
+     * @param file The snapshot file
+     * @param classLoaders The class loaders used to resolve the extension points
+     * @param resolvedExtensions The resolved extensions, by extension point
+     * @throws IOException If the file cannot be written
+     * @throws IllegalArgumentException If the class loaders cannot be fingerprinted
+     */
+    public static void write(
+        Path file,
+        List<ClassLoader> classLoaders,
+        Collection<ResolvedExtensions<?>> resolvedExtensions
+    ) throws IOException {
+        byte[] fingerprint = fingerprint(classLoaders);
+        if (fingerprint == null) {
+            throw new IllegalArgumentException(
+                "Cannot create a discovery snapshot for class loaders " + classLoaders
+            );
+        }
+        Path temporary = Files.createTempFile(
+            file.toAbsolutePath().getParent(),
+            file.getFileName().toString(),
+            ".tmp"
+        );
+        try (var output = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temporary))
+        )) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.write(fingerprint);
+            List<ResolvedExtensions<?>> writable = resolvedExtensions.stream()
+                .filter(resolved -> isWritable(resolved, classLoaders))
+                .collect(Collectors.toList());
+            output.writeInt(writable.size());
+            for (ResolvedExtensions<?> resolved : writable) {
+                output.writeUTF(resolved.extensionPoint().getName());
+                output.writeInt(resolved.extensions().size());
+                for (ExtensionDescriptor extension : resolved.extensions()) {
+                    write(output, extension, classLoaderIndex(classLoaders, extension.classLoader()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        // readers never see an incomplete snapshot
+        Files.move(
+            temporary,
+            file,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+
+    /**
+     * Read a snapshot, as long as it is still valid for the given class loaders
+     * @param file The snapshot file
+     * @param classLoaders The class loaders that will use the snapshot
+     * @return The ordered extensions, by extension point name, or
+     * <code>null</code> if the snapshot does not exist, is stale or cannot
+     * be read
+     */
+    public static Map<String, List<ExtensionDescriptor>> read(
+        Path file,
+        List<ClassLoader> classLoaders
+    ) {
+        if (!Files.isRegularFile(file)) {
+            LOGGER.debug("Discovery snapshot {} does not exist", file);
+            return null;
+        }
+        try (var input = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(file))
+        )) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Ignored discovery snapshot {}: unknown format", file);
+                return null;
+            }
+            byte[] storedFingerprint = input.readNBytes(fingerprintLength());
+            if (!Arrays.equals(storedFingerprint, fingerprint(classLoaders))) {
+                LOGGER.debug("Ignored discovery snapshot {}: class loaders have changed", file);
+                return null;
+            }
+            Map<String, List<ExtensionDescriptor>> extensions = new HashMap<>();
+            int extensionPoints = input.readInt();
+            for (int i = 0; i < extensionPoints; i++) {
+                String extensionPoint = input.readUTF();
+                int size = input.readInt();
+                List<ExtensionDescriptor> descriptors = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    descriptors.add(read(input, classLoaders));
+                }
+                extensions.put(extensionPoint, List.copyOf(descriptors));
+            }
+            LOGGER.debug("Using discovery snapshot {}", file);
+            return extensions;
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            LOGGER.warn("Ignored discovery snapshot {} [error was: {}]", file, e.toString());
+            return null;
+        }
+    }
+
+
+    private static void write(
+        DataOutputStream output,
+        ExtensionDescriptor extension,
+        int classLoaderIndex
+    ) throws IOException {
+        Extension metadata = extension.metadata();
+        output.writeInt(classLoaderIndex);
+        output.writeUTF(extension.className());
+        output.writeUTF(extension.canonicalName());
+        output.writeUTF(Objects.requireNonNullElse(extension.factoryClassName(), ""));
+        output.writeUTF(metadata.provider());
+        output.writeUTF(metadata.name());
+        output.writeUTF(metadata.version());
+        output.writeUTF(metadata.extensionPoint());
+        output.writeUTF(metadata.extensionPointVersion());
+        output.writeBoolean(metadata.externallyManaged());
+        output.writeByte(metadata.scope().ordinal());
+        output.writeInt(metadata.priority());
+        output.writeBoolean(metadata.overridable());
+        output.writeUTF(metadata.overrides());
+    }
+
+
+    private static ExtensionDescriptor read(
+        DataInputStream input,
+        List<ClassLoader> classLoaders
+    ) throws IOException {
+        ClassLoader classLoader = classLoaders.get(input.readInt());
+        String className = input.readUTF();
+        String canonicalName = input.readUTF();
+        String factoryClassName = input.readUTF();
+        var metadata = new IndexedExtension(
+            input.readUTF(),
+            input.readUTF(),
+            input.readUTF(),
+            input.readUTF(),
+            input.readUTF(),
+            input.readBoolean(),
+            ExtensionScope.values()[input.readByte()],
+            input.readInt(),
+            input.readBoolean(),
+            input.readUTF()
+        );
+        return ExtensionDescriptor.restored(
+            className,
+            canonicalName,
+            metadata,
+            classLoader,
+            factoryClassName.isEmpty() ? null : factoryClassName
+        );
+    }
+
+
+    private static boolean isWritable(ResolvedExtensions<?> resolved, List<ClassLoader> classLoaders) {
+        return resolved.extensions().stream()
+            .allMatch(extension -> classLoaderIndex(classLoaders, extension.classLoader()) >= 0);
+    }
+
+
+    /*
+     * The first class loader of the list that is able to load classes from
+     * the given one
+     */
+    private static int classLoaderIndex(List<ClassLoader> classLoaders, ClassLoader classLoader) {
+        for (int i = 0; i < classLoaders.size(); i++) {
+            for (ClassLoader current = classLoaders.get(i); current != null; current = current.getParent()) {
+                if (current == classLoader) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Compute the fingerprint of the contents of the given class loaders
+     * @return The fingerprint, or <code>null</code> if any of the class
+     * loaders cannot be fingerprinted
+     */
+    static byte[] fingerprint(List<ClassLoader> classLoaders) {
+        MessageDigest digest = newDigest();
+        for (ClassLoader classLoader : classLoaders) {
+            try {
+                if (!fingerprint(classLoader, digest)) {
+                    return null;
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                LOGGER.debug("Cannot fingerprint class loader {} [error was: {}]", classLoader, e.toString());
+                return null;
+            }
+            update(digest, "\n");
+        }
+        return digest.digest();
+    }
+
+
+    private static boolean fingerprint(ClassLoader classLoader, MessageDigest digest)
+    throws IOException, URISyntaxException {
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (current instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) current).getURLs()) {
+                    if (!"file".equals(url.getProtocol())) {
+                        return false;
+                    }
+                    fingerprint(Path.of(url.toURI()), digest);
+                }
+            } else if (current == ClassLoader.getSystemClassLoader()) {
+                for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (!path.isEmpty()) {
+                        fingerprint(Path.of(path), digest);
+                    }
+                }
+                update(digest, System.getProperty("jdk.module.path", ""));
+            } else if (current == ClassLoader.getPlatformClassLoader()) {
+                update(digest, System.getProperty("java.home") + System.getProperty("java.version"));
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static void fingerprint(Path path, MessageDigest digest) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        update(digest, absolutePath.toString());
+        if (Files.isDirectory(absolutePath)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(absolutePath)) {
+                files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                update(digest, absolutePath.relativize(file).toString());
+                fingerprintAttributes(file, digest);
+            }
+        } else if (Files.exists(absolutePath)) {
+            fingerprintAttributes(absolutePath, digest);
+        }
+    }
+
+
+    private static void fingerprintAttributes(Path file, MessageDigest digest) throws IOException {
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        update(digest, attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+    }
+
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+
+    private static int fingerprintLength() {
+        return newDigest().getDigestLength();
+    }
+
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.function.Supplier;
+
+import jext.Extension;
+
+
+/**
+ * Description of an available extension. The metadata of the extension can
+ * be inspected without loading the extension class when it comes from an
+ * {@link ExtensionIndex}; in that case, the class is only loaded when it is
+ * actually required.
+ * <p>
+ * Descriptors of extensions provided by external loaders wrap the provided
+ * instance.
+ */
+public final class ExtensionDescriptor {
+
+
+    /**
+     * Create a descriptor for an already loaded extension class
+     */
+    public static ExtensionDescriptor of(Class<?> extensionClass) {
+        var descriptor = new ExtensionDescriptor(
+            extensionClass.getName(),
+            extensionClass.getCanonicalName(),
+            extensionClass.getAnnotation(Extension.class),
+            extensionClass.getClassLoader(),
+            null,
+            null
+        );
+        descriptor.extensionClass = extensionClass;
+        return descriptor;
+    }
+
+
+    /**
+     * Create a descriptor for an extension instance provided by an external loader
+     */
+    public static ExtensionDescriptor ofInstance(Object instance) {
+        var descriptor = new ExtensionDescriptor(
+            instance.getClass().getName(),
+            instance.getClass().getCanonicalName(),
+            instance.getClass().getAnnotation(Extension.class),
+            instance.getClass().getClassLoader(),
+            null,
+            instance
+        );
+        descriptor.extensionClass = instance.getClass();
+        return descriptor;
+    }
+
+
+    /**
+     * Create a descriptor for an indexed extension that would be loaded using
+     * the given class loader
+     */
+    public static ExtensionDescriptor indexed(ExtensionIndex.Entry entry, ClassLoader classLoader) {
+        return new ExtensionDescriptor(
+            entry.className(),
+            entry.canonicalName(),
+            entry.metadata(),
+            classLoader,
+            entry.factoryClassName(),
+            null
+        );
+    }
+
+
+    /*
+     * Create a descriptor of an extension restored from a discovery snapshot
+     */
+    static ExtensionDescriptor restored(
+        String className,
+        String canonicalName,
+        Extension metadata,
+        ClassLoader classLoader,
+        String factoryClassName
+    ) {
+        return new ExtensionDescriptor(
+            className,
+            canonicalName,
+            metadata,
+            classLoader,
+            factoryClassName,
+            null
+        );
+    }
+
+
+    private final String className;
+    private final String canonicalName;
+    private final Extension metadata;
+    private final ClassLoader classLoader;
+    private final String factoryClassName;
+    private final Object instance;
+    private final int priority;
+    private volatile Class<?> extensionClass;
+    private volatile Supplier<?> instantiator;
+
+
+    private ExtensionDescriptor(
+        String className,
+        String canonicalName,
+        Extension metadata,
+        ClassLoader classLoader,
+        String factoryClassName,
+        Object instance
+    ) {
+        this.className = className;
+        this.canonicalName = canonicalName;
+        this.metadata = metadata;
+        this.classLoader = classLoader;
+        this.factoryClassName = factoryClassName;
+        this.instance = instance;
+        // kept apart, so sorting does not go through the annotation proxy
+        this.priority = metadata == null ? 0 : metadata.priority();
+    }
+
+
+    /** @return The binary name of the extension class */
+    public String className() {
+        return className;
+    }
+
+
+    /** @return The canonical name of the extension class */
+    public String canonicalName() {
+        return canonicalName;
+    }
+
+
+    public Extension metadata() {
+        return metadata;
+    }
+
+
+    /** @return The priority of the extension, as declared in its metadata */
+    public int priority() {
+        return priority;
+    }
+
+
+    /** @return The class loader used to load the extension class */
+    ClassLoader classLoader() {
+        return classLoader;
+    }
+
+
+    /**
+     * @return The instance provided by an external loader, or <code>null</code>
+     * if the extension is handled by the built-in loader
+     */
+    public Object instance() {
+        return instance;
+    }
+
+
+    /**
+     * @return The name of the factory class generated by the annotation
+     * processor, or <code>null</code> if it is not known
+     */
+    public String factoryClassName() {
+        return factoryClassName;
+    }
+
+
+    /**
+     * Get the factory class generated by the annotation processor
+     * @throws ClassNotFoundException if the class cannot be loaded
+     */
+    public Class<?> factoryClass() throws ClassNotFoundException {
+        return Class.forName(factoryClassName, true, classLoader);
+    }
+
+
+    /**
+     * @return The function used to create new instances of the extension, or
+     * <code>null</code> if it has not been set yet
+     */
+    Supplier<?> instantiator() {
+        return instantiator;
+    }
+
+
+    void instantiator(Supplier<?> instantiator) {
+        this.instantiator = instantiator;
+    }
+
+
+    /**
+     * Get the extension class, loading (but not initializing) it if required
+     * @throws ClassNotFoundException if the class cannot be loaded
+     */
+    public Class<?> extensionClass() throws ClassNotFoundException {
+        Class<?> type = extensionClass;
+        if (type == null) {
+            type = Class.forName(className, false, classLoader);
+            extensionClass = type;
+        }
+        return type;
+    }
+
+
+    @Override
+    public String toString() {
+        return className;
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.Extension;
+import jext.ExtensionScope;
+
+
+/**
+ * Metadata index of the extensions of a class loader, generated at compile
+ * time by the {@link jext.ExtensionProcessor} in the resource
+ * {@value ExtensionIndexFormat#RESOURCE} of each jar (or class directory).
+ * @see ExtensionIndexFormat
+ */
+public class ExtensionIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionIndex.class);
+
+
+    /**
+     * Read all the index resources visible from the given class loader
+     */
+    public static ExtensionIndex read(ClassLoader classLoader) {
+        var index = new ExtensionIndex();
+        try {
+            Enumeration<URL> resources = PluginClassLoader.resources(
+                classLoader,
+                ExtensionIndexFormat.RESOURCE
+            );
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                index.read(resource, rootOf(resource, ExtensionIndexFormat.RESOURCE));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot read extension index resources from {}", classLoader, e);
+        }
+        return index;
+    }
+
+
+    /**
+     * @return The location of the jar or directory that contains the resource
+     */
+    public static String rootOf(URL resource, String resourcePath) {
+        String url = resource.toString();
+        return url.endsWith(resourcePath) ?
+            url.substring(0, url.length() - resourcePath.length()) :
+            url;
+    }
+
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Set<String> extensionPoints = new LinkedHashSet<>();
+
+
+    private ExtensionIndex() {
+    }
+
+
+    /**
+     * Get the indexed entry of an extension
+     * @param root The location of the jar or directory that declares the extension
+     * @param extensionPoint The qualified name of the extension point
+     * @param className The name of the extension class, either binary or canonical
+     * @return The index entry, or <code>null</code> if the extension is not indexed
+     */
+    public Entry entry(String root, String extensionPoint, String className) {
+        return entries.get(root + "\t" + extensionPoint + "\t" + className);
+    }
+
+
+    /**
+     * @return The qualified names of the extension points that have any
+     * indexed extension, in the order they were first found
+     */
+    public Set<String> extensionPoints() {
+        return Collections.unmodifiableSet(extensionPoints);
+    }
+
+
+    private void read(URL resource, String root) {
+        try (var reader = new BufferedReader(
+            new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)
+        )) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (ExtensionIndexFormat.keyOf(line) != null) {
+                    parse(line, root);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Cannot read extension index {}", resource, e);
+        }
+    }
+
+
+    private void parse(String line, String root) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != ExtensionIndexFormat.FIELDS) {
+            LOGGER.warn("Ignored malformed extension index entry: {}", line);
+            return;
+        }
+        try {
+            var entry = new Entry(
+                ExtensionIndexFormat.unescape(fields[0]),
+                ExtensionIndexFormat.unescape(fields[1]),
+                ExtensionIndexFormat.unescape(fields[2]),
+                ExtensionIndexFormat.unescape(fields[3]),
+                new IndexedExtension(
+                    ExtensionIndexFormat.unescape(fields[4]),
+                    ExtensionIndexFormat.unescape(fields[5]),
+                    ExtensionIndexFormat.unescape(fields[6]),
+                    ExtensionIndexFormat.unescape(fields[7]),
+                    ExtensionIndexFormat.unescape(fields[8]),
+                    Boolean.parseBoolean(fields[9]),
+                    ExtensionScope.valueOf(fields[10]),
+                    Integer.parseInt(fields[11]),
+                    Boolean.parseBoolean(fields[12]),
+                    ExtensionIndexFormat.unescape(fields[13])
+                ),
+                fields[14].isEmpty() ?
+                    null :
+                    ExtensionIndexFormat.unescape(fields[14])
+            );
+            entries.put(root + "\t" + entry.extensionPoint + "\t" + entry.className, entry);
+            entries.put(root + "\t" + entry.extensionPoint + "\t" + entry.canonicalName, entry);
+            extensionPoints.add(entry.extensionPoint);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignored malformed extension index entry: {} ({})", line, e.toString());
+        }
+    }
+
+
+    /**
+     * An extension described in the index
+     */
+    public static class Entry {
+
+        private final String extensionPoint;
+        private final String extensionPointVersion;
+        private final String className;
+        private final String canonicalName;
+        private final Extension metadata;
+        private final String factoryClassName;
+
+        private Entry(
+            String extensionPoint,
+            String extensionPointVersion,
+            String className,
+            String canonicalName,
+            Extension metadata,
+            String factoryClassName
+        ) {
+            this.extensionPoint = extensionPoint;
+            this.extensionPointVersion = extensionPointVersion;
+            this.className = className;
+            this.canonicalName = canonicalName;
+            this.metadata = metadata;
+            this.factoryClassName = factoryClassName;
+        }
+
+
+        public String extensionPoint() {
+            return extensionPoint;
+        }
+
+
+        /** The version of the extension point at compile time */
+        public String extensionPointVersion() {
+            return extensionPointVersion;
+        }
+
+
+        public String className() {
+            return className;
+        }
+
+
+        public String canonicalName() {
+            return canonicalName;
+        }
+
+
+        public Extension metadata() {
+            return metadata;
+        }
+
+
+        /** The generated factory class, or <code>null</code> if there is none */
+        public String factoryClassName() {
+            return factoryClassName;
+        }
+    }
+
+}
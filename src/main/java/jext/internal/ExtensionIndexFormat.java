@@ -0,0 +1,122 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import jext.Extension;
+
+
+/**
+ * Format of the extension index resource {@value #RESOURCE}.
+ * <p>
+ * Each line of the resource describes one extension by means of the
+ * following tab-separated fields:
+ * <pre>
+ * extensionPoint  extensionPointDeclaredVersion  className  canonicalName
+ * provider  name  version  extensionPointAttribute  extensionPointVersion
+ * externallyManaged  scope  priority  overridable  overrides  factory
+ * </pre>
+ * The last field is the name of the factory class generated for the
+ * extension, or empty if no factory was generated. Lines starting with
+ * <code>#</code> are ignored.
+ * <p>
+ * This class is used by the annotation processor, so it must not depend on
+ * any library other than the JDK.
+ */
+public final class ExtensionIndexFormat {
+
+    public static final String RESOURCE = "META-INF/jext/index";
+    public static final String HEADER = "# jext extension index v1";
+
+    static final int FIELDS = 15;
+
+
+    private ExtensionIndexFormat() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * Format an index line for the given extension
+     * @param extensionPoint The qualified name of the extension point
+     * @param extensionPointVersion The version of the extension point at compile time
+     * @param className The binary name of the extension class
+     * @param canonicalName The canonical name of the extension class
+     * @param metadata The extension metadata
+     * @param factoryClassName The binary name of the generated factory class,
+     * or <code>null</code> if there is none
+     */
+    public static String line(
+        String extensionPoint,
+        String extensionPointVersion,
+        String className,
+        String canonicalName,
+        Extension metadata,
+        String factoryClassName
+    ) {
+        return String.join("\t",
+            escape(extensionPoint),
+            escape(extensionPointVersion),
+            escape(className),
+            escape(canonicalName),
+            escape(metadata.provider()),
+            escape(metadata.name()),
+            escape(metadata.version()),
+            escape(metadata.extensionPoint()),
+            escape(metadata.extensionPointVersion()),
+            String.valueOf(metadata.externallyManaged()),
+            metadata.scope().name(),
+            String.valueOf(metadata.priority()),
+            String.valueOf(metadata.overridable()),
+            escape(metadata.overrides()),
+            factoryClassName == null ? "" : escape(factoryClassName)
+        );
+    }
+
+
+    /**
+     * @return The key (extension point and class name) of an index line, or
+     * <code>null</code> if the line is not an index entry
+     */
+    public static String keyOf(String line) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = line.split("\t", -1);
+        return fields.length < 3 ? null : fields[0] + "\t" + fields[2];
+    }
+
+
+    static String escape(String value) {
+        return value
+            .replace("\\", "\\\\")
+            .replace("\t", "\\t")
+            .replace("\n", "\\n")
+            .replace("\r", "\\r");
+    }
+
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder string = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': string.append('\t'); break;
+                    case 'n': string.append('\n'); break;
+                    case 'r': string.append('\r'); break;
+                    default: string.append(next);
+                }
+            } else {
+                string.append(c);
+            }
+        }
+        return string.toString();
+    }
+
+}
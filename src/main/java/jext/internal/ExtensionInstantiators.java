@@ -0,0 +1,161 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Cache of functions that create new instances of a class invoking its
+ * public constructor without arguments, for extensions that were compiled
+ * without the annotation processor (and hence have no generated factory).
+ * <p>
+ * The constructor is looked up only once per class. Whenever possible, the
+ * function is spun using the {@link LambdaMetafactory}, so it is as efficient
+ * as a regular lambda expression; otherwise it relies on a {@link MethodHandle}.
+ * The cache is bound to the classes themselves, so it does not prevent them
+ * from being unloaded.
+ */
+final class ExtensionInstantiators {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionInstantiators.class);
+
+    private static final ClassValue<Supplier<Object>> instantiators = new ClassValue<>() {
+        @Override
+        protected Supplier<Object> computeValue(Class<?> type) {
+            return instantiatorOf(type);
+        }
+    };
+
+
+    private ExtensionInstantiators() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * @return A function that creates new instances of the given class. If the
+     * class has no suitable constructor, the function would log the error and
+     * return <code>null</code>
+     */
+    static Supplier<Object> of(Class<?> type) {
+        return instantiators.get(type);
+    }
+
+
+    private static Supplier<Object> instantiatorOf(Class<?> type) {
+        Constructor<?> constructor;
+        try {
+            constructor = type.getConstructor();
+        } catch (NoSuchMethodException | SecurityException e) {
+            return failing(type, e);
+        }
+        Module module = ExtensionInstantiators.class.getModule();
+        if (!module.canRead(type.getModule())) {
+            module.addReads(type.getModule());
+        }
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle;
+        try {
+            handle = lookup.unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            return reflective(type, constructor);
+        }
+        if (isVisible(type)) {
+            try {
+                return lambda(lookup, type, handle);
+            } catch (Throwable e) {
+                LOGGER.debug(
+                    "Cannot create a lambda instantiator for {}, a method handle will be used [error was: {}]",
+                    type.getCanonicalName(),
+                    e.toString()
+                );
+            }
+        }
+        return methodHandle(handle.asType(MethodType.methodType(Object.class)));
+    }
+
+
+    /*
+     * Lambda classes are defined in the class loader of this module, so they
+     * can only refer to classes visible from it
+     */
+    private static boolean isVisible(Class<?> type) {
+        try {
+            ClassLoader classLoader = ExtensionInstantiators.class.getClassLoader();
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> lambda(
+        MethodHandles.Lookup lookup,
+        Class<?> type,
+        MethodHandle constructor
+    ) throws Throwable {
+        CallSite callSite = LambdaMetafactory.metafactory(
+            lookup,
+            "get",
+            MethodType.methodType(Supplier.class),
+            MethodType.methodType(Object.class),
+            constructor,
+            MethodType.methodType(type)
+        );
+        return (Supplier<Object>) callSite.getTarget().invoke();
+    }
+
+
+    private static Supplier<Object> methodHandle(MethodHandle constructor) {
+        return () -> {
+            try {
+                return constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        };
+    }
+
+
+    private static Supplier<Object> reflective(Class<?> type, Constructor<?> constructor) {
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                logError(type, e);
+                return null;
+            }
+        };
+    }
+
+
+    private static Supplier<Object> failing(Class<?> type, Exception error) {
+        return () -> {
+            logError(type, error);
+            return null;
+        };
+    }
+
+
+    private static void logError(Class<?> type, Exception error) {
+        LOGGER.error(
+            "Class {} cannot be instantiated, a public constructor with " +
+            "zero arguments is required [error was: {}]",
+            type.getCanonicalName(),
+            error.toString()
+        );
+    }
+
+}
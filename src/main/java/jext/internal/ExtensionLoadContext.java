@@ -19,6 +19,7 @@ public class ExtensionLoadContext<T> {
             sessionID,
             extensionPoint,
             dataOf(extensionPoint),
+            selectAll(),
             selectAll()
         );
     }
@@ -33,6 +34,7 @@ public class ExtensionLoadContext<T> {
             sessionID,
             extensionPoint,
             dataOf(extensionPoint),
+            selectAll(),
             condition
         );
     }
@@ -47,13 +49,15 @@ public class ExtensionLoadContext<T> {
             sessionID,
             extensionPoint,
             dataOf(extensionPoint),
-            conditionFromAnnotation(condition)
+            condition,
+            selectAll()
         );
     }
 
 
     private final Class<T> extensionPoint;
     private final ExtensionPoint extensionPointData;
+    private final Predicate<Extension> metadataCondition;
     private final Predicate<T> condition;
     private final String sessionID;
 
@@ -66,11 +70,13 @@ public class ExtensionLoadContext<T> {
         String sessionID,
         Class<T> extensionPoint,
         ExtensionPoint extensionPointData,
+        Predicate<Extension> metadataCondition,
         Predicate<T> condition
     ) {
         this.sessionID = sessionID;
         this.extensionPoint = extensionPoint;
         this.extensionPointData = extensionPointData;
+        this.metadataCondition = metadataCondition;
         this.condition = condition;
 
     }
@@ -79,24 +85,6 @@ public class ExtensionLoadContext<T> {
 
 
 
-    public ExtensionLoadContext<T> withInternalLoader(
-        List<ClassLoader> classLoaders,
-        ExtensionLoader extensionLoader
-    ) {
-        var context = new ExtensionLoadContext<T>(
-            sessionID,
-            extensionPoint,
-            extensionPointData,
-            condition
-        );
-        context.classLoaders = classLoaders;
-        context.extensionLoader = extensionLoader;
-        context.externallyManaged = false;
-        return context;
-    }
-
-
-
     public ExtensionLoadContext<T> withExternalLoader(
         List<ClassLoader> classLoaders,
         ExtensionLoader extensionLoader
@@ -105,6 +93,7 @@ public class ExtensionLoadContext<T> {
             sessionID,
             extensionPoint,
             extensionPointData,
+            metadataCondition,
             condition
         );
         context.classLoaders = classLoaders;
@@ -119,6 +108,27 @@ public class ExtensionLoadContext<T> {
     }
 
 
+    /**
+     * @return The external loader, or <code>null</code> if the extensions
+     * are loaded by the built-in loader
+     */
+    public ExtensionLoader extensionLoader() {
+        return extensionLoader;
+    }
+
+
+    /**
+     * @return The condition that the extension metadata must satisfy, that
+     * can be checked prior to instantiate the extension
+     */
+    public Predicate<Extension> metadataCondition() {
+        return metadataCondition;
+    }
+
+
+    /**
+     * @return The condition that the extension instance must satisfy
+     */
     public Predicate<T> condition() {
         return condition;
     }
@@ -161,12 +171,7 @@ public class ExtensionLoadContext<T> {
     }
 
 
-    private static <T> Predicate<T> conditionFromAnnotation(Predicate<Extension> condition) {
-        return extension -> condition.test(extension.getClass().getAnnotation(Extension.class));
-    }
-
-
-    private static <T> ExtensionPoint dataOf(Class<T> extensionPoint) {
+    static <T> ExtensionPoint dataOf(Class<T> extensionPoint) {
         ExtensionPoint extensionPointData = extensionPoint.getAnnotation(ExtensionPoint.class);
         if (extensionPointData == null) {
             throw new IllegalArgumentException(
@@ -0,0 +1,230 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+
+/**
+ * The pool of instances of a {@link jext.ExtensionScope#POOLED} extension
+ * class. At most <code>maxSize</code> instances exist at the same time;
+ * borrowers wait until an instance is returned when every one is in use.
+ * Instances are created outside the lock, so a slow constructor does not
+ * block the borrowers of idle instances.
+ * <p>
+ * Once released, the pool does not keep any instance: waiting borrowers
+ * create their own, and returned instances are discarded.
+ */
+public final class ExtensionPool {
+
+    private final String extensionName;
+    private final int minSize;
+    private final int maxSize;
+    private final Supplier<?> instantiator;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private final Deque<Object> idle = new ArrayDeque<>();
+    private int size;
+    private boolean released;
+    private volatile boolean filled;
+    private long created;
+    private long borrowed;
+    private long waits;
+    private long waitTime;
+
+
+    ExtensionPool(String extensionName, int minSize, int maxSize, Supplier<?> instantiator) {
+        this.extensionName = extensionName;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.instantiator = instantiator;
+    }
+
+
+    /**
+     * Take an idle instance, creating a new one if none is idle and the pool
+     * is not full, or waiting until one is returned otherwise
+     * @return The borrowed instance, or <code>null</code> if it cannot be created
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Object borrow() throws InterruptedException {
+        fill();
+        lock.lock();
+        try {
+            borrowed++;
+            while (!released && size >= maxSize && idle.isEmpty()) {
+                waits++;
+                long start = System.nanoTime();
+                try {
+                    returned.await();
+                } catch (InterruptedException e) {
+                    // a returned instance may have been signalled to this borrower
+                    returned.signal();
+                    throw e;
+                } finally {
+                    waitTime += System.nanoTime() - start;
+                }
+            }
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            size++;
+        } finally {
+            lock.unlock();
+        }
+        return create();
+    }
+
+
+    /**
+     * Return a borrowed instance to the pool
+     */
+    public void giveBack(Object instance) {
+        lock.lock();
+        try {
+            if (released) {
+                size--;
+            } else {
+                idle.push(instance);
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Discard every idle instance. Instances in use are discarded when
+     * they are returned.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            released = true;
+            size -= idle.size();
+            idle.clear();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public String extensionName() {
+        return extensionName;
+    }
+
+
+    public int minSize() {
+        return minSize;
+    }
+
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+
+    /** @return The number of instances currently borrowed */
+    public int inUse() {
+        return locked(() -> size - idle.size());
+    }
+
+
+    /** @return The number of instances currently available */
+    public int idle() {
+        return locked(idle::size);
+    }
+
+
+    /** @return The number of instances created so far */
+    public long created() {
+        return locked(() -> created);
+    }
+
+
+    /** @return The number of borrowings so far */
+    public long borrowed() {
+        return locked(() -> borrowed);
+    }
+
+
+    /** @return The number of borrowings that had to wait for an instance */
+    public long waits() {
+        return locked(() -> waits);
+    }
+
+
+    /** @return The total time spent waiting for an instance, in nanoseconds */
+    public long waitTime() {
+        return locked(() -> waitTime);
+    }
+
+
+    private <V> V locked(Supplier<V> value) {
+        lock.lock();
+        try {
+            return value.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /*
+     * Create the minimum number of instances the first time the pool is used
+     */
+    private void fill() {
+        if (filled) {
+            return;
+        }
+        int missing;
+        lock.lock();
+        try {
+            if (filled) {
+                return;
+            }
+            filled = true;
+            missing = Math.max(0, minSize - size);
+            size += missing;
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < missing; i++) {
+            Object instance = create();
+            if (instance != null) {
+                giveBack(instance);
+            }
+        }
+    }
+
+
+    private Object create() {
+        Object instance = null;
+        try {
+            instance = instantiator.get();
+            return instance;
+        } finally {
+            lock.lock();
+            try {
+                if (instance == null) {
+                    // the reserved place is free again
+                    size--;
+                    returned.signal();
+                } else {
+                    created++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+
+/**
+ * The pools of {@link jext.ExtensionScope#POOLED} extensions of an extension
+ * manager (and its sessions), one per extension class. Pools are created the
+ * first time an instance is borrowed, using the sizes configured for the
+ * extension class at that moment.
+ */
+public final class ExtensionPools {
+
+    private static final int DEFAULT_MIN_SIZE = 0;
+    private static final int DEFAULT_MAX_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final Map<String, int[]> sizes = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ExtensionPool> pools = new ConcurrentHashMap<>();
+
+
+    /**
+     * Set the sizes of the pool of the given extension class
+     * @throws IllegalArgumentException if the sizes are not valid
+     */
+    public void configure(String extensionClassName, int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid pool sizes for %s: min=%d, max=%d", extensionClassName, minSize, maxSize
+            ));
+        }
+        sizes.put(extensionClassName, new int[] { minSize, maxSize });
+    }
+
+
+    /**
+     * Obtain the pool of the given extension class, creating it if required
+     * @param extensionClass The extension class
+     * @param instantiator The function creating new instances of the class
+     */
+    public ExtensionPool pool(Class<?> extensionClass, Supplier<?> instantiator) {
+        ExtensionPool pool = pools.get(extensionClass);
+        if (pool != null) {
+            return pool;
+        }
+        return pools.computeIfAbsent(extensionClass, x -> {
+            int[] poolSizes = sizes.getOrDefault(
+                extensionClass.getName(),
+                new int[] { DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE }
+            );
+            return new ExtensionPool(extensionClass.getName(), poolSizes[0], poolSizes[1], instantiator);
+        });
+    }
+
+
+    /**
+     * @return The existing pools
+     */
+    public Collection<ExtensionPool> pools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+
+
+    /**
+     * Release and discard every pool
+     */
+    public void releaseAll() {
+        for (Class<?> extensionClass : List.copyOf(pools.keySet())) {
+            release(extensionClass);
+        }
+    }
+
+
+    /**
+     * Release and discard the pools of the extension classes defined by the
+     * given class loader
+     */
+    public void release(ClassLoader classLoader) {
+        for (Class<?> extensionClass : List.copyOf(pools.keySet())) {
+            if (extensionClass.getClassLoader() == classLoader) {
+                release(extensionClass);
+            }
+        }
+    }
+
+
+    private void release(Class<?> extensionClass) {
+        ExtensionPool pool = pools.remove(extensionClass);
+        if (pool != null) {
+            pool.release();
+        }
+    }
+
+}
@@ -0,0 +1,401 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Registry of resolved extension points. The discovery, validation, override
+ * resolution and priority sorting of each extension point is performed once,
+ * the first time it is requested, and reused until it is invalidated.
+ * <p>
+ * The {@link ExtensionIndex} and the scan of each class loader are also
+ * performed only once, and cached separately per class loader. That way,
+ * class loaders can be added or removed (see {@link #update(List, List)})
+ * without scanning the rest of them again.
+ * <p>
+ * The registry is thread-safe. The class loaders and the extension points
+ * resolved using them are published as an immutable {@link Snapshot}, so
+ * each request sees either the state previous to an update or the state
+ * after it, never a partial one. Once resolved, extension points can be read
+ * concurrently without locking; each extension point is resolved only once
+ * per snapshot even if it is requested concurrently.
+ * <p>
+ * Optionally, the class loaders can be scanned concurrently using a given
+ * executor; see {@link #discoveryExecutor(Executor)}. Also, resolved
+ * extension points can be stored in a {@link DiscoverySnapshot} and restored
+ * later, avoiding discovery altogether.
+ */
+public class ExtensionRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionRegistry.class);
+
+    private final InternalExtensionLoader internalLoader;
+    /*
+     * Invalidations replace the cached indexes and scans instead of clearing
+     * them, so a scan in progress can only store its (stale) result in a map
+     * that is no longer used
+     */
+    private volatile Map<ClassLoader, ExtensionIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<ClassLoader, Map<Class<?>, Map<Object, ExtensionDescriptor>>> scans =
+        new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+    private volatile Executor discoveryExecutor;
+    private volatile long version;
+    private final Map<Class<?>, CompletableFuture<ResolvedExtensions<?>>> pendingResolutions =
+        new ConcurrentHashMap<>();
+
+
+    public ExtensionRegistry(List<ClassLoader> classLoaders, InternalExtensionLoader internalLoader) {
+        this.internalLoader = internalLoader;
+        this.snapshot = newSnapshot(List.copyOf(classLoaders));
+    }
+
+
+    /**
+     * @return The current state of the registry
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+
+    /**
+     * @return A number that changes whenever the registry is modified, so
+     * anything derived from the resolved extensions can be reused as long as
+     * it remains the same
+     */
+    public long version() {
+        return version;
+    }
+
+
+    /**
+     * Resolve the given extension point using the current state of the registry
+     */
+    public <T> ResolvedExtensions<T> resolve(Class<T> extensionPoint) {
+        return snapshot.resolve(extensionPoint);
+    }
+
+
+    /**
+     * Resolve the given extension point asynchronously using the given
+     * executor. Concurrent requests for the same extension point share the
+     * same resolution, and already resolved extension points do not require
+     * any task at all.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<ResolvedExtensions<T>> resolveAsync(
+        Class<T> extensionPoint,
+        Executor executor
+    ) {
+        var current = snapshot;
+        var resolved = (ResolvedExtensions<T>) current.resolvedExtensions.get(extensionPoint);
+        if (resolved != null) {
+            if (Metrics.enabled()) {
+                Metrics.reporter().resolution(extensionPoint, true);
+            }
+            return CompletableFuture.completedFuture(resolved);
+        }
+        var resolution = new CompletableFuture<ResolvedExtensions<?>>();
+        var pending = pendingResolutions.putIfAbsent(extensionPoint, resolution);
+        if (pending != null) {
+            return pending.thenApply(result -> (ResolvedExtensions<T>) result);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    resolution.complete(resolve(extensionPoint));
+                } catch (RuntimeException | Error e) {
+                    resolution.completeExceptionally(e);
+                } finally {
+                    pendingResolutions.remove(extensionPoint, resolution);
+                }
+            });
+        } catch (RuntimeException e) {
+            // the executor rejected the task
+            pendingResolutions.remove(extensionPoint, resolution);
+            resolution.completeExceptionally(e);
+        }
+        return resolution.thenApply(result -> (ResolvedExtensions<T>) result);
+    }
+
+
+    /**
+     * @return An unmodifiable list with the current class loaders
+     */
+    public List<ClassLoader> classLoaders() {
+        return snapshot.classLoaders;
+    }
+
+
+    /**
+     * Obtain the extension points that have any extension declared in the
+     * {@link ExtensionIndex} of the current class loaders. Extension point
+     * classes that cannot be loaded are ignored.
+     * @return The extension point classes, in the order they were found
+     */
+    public List<Class<?>> indexedExtensionPoints() {
+        var classLoaders = snapshot.classLoaders;
+        Set<String> names = new LinkedHashSet<>();
+        for (ClassLoader classLoader : classLoaders) {
+            names.addAll(index(classLoader).extensionPoints());
+        }
+        List<Class<?>> extensionPoints = new ArrayList<>();
+        for (String name : names) {
+            loadClass(name, classLoaders).ifPresentOrElse(
+                extensionPoints::add,
+                () -> LOGGER.debug("Indexed extension point {} cannot be loaded; ignored", name)
+            );
+        }
+        return extensionPoints;
+    }
+
+
+    private static Optional<Class<?>> loadClass(String name, List<ClassLoader> classLoaders) {
+        for (ClassLoader classLoader : classLoaders) {
+            try {
+                return Optional.of(Class.forName(name, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // try with the next class loader
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * Add and remove class loaders, publishing a new snapshot. Only the
+     * added class loaders would be scanned; extension points are resolved
+     * again reusing the scans of the rest of class loaders.
+     * @param added The class loaders to be added at the end of the list
+     * @param removed The class loaders to be removed
+     */
+    public synchronized void update(List<ClassLoader> added, List<ClassLoader> removed) {
+        List<ClassLoader> classLoaders = new ArrayList<>(snapshot.classLoaders);
+        classLoaders.removeAll(removed);
+        classLoaders.addAll(added);
+        for (ClassLoader classLoader : removed) {
+            scans.remove(classLoader);
+            indexes.remove(classLoader);
+        }
+        snapshot = newSnapshot(List.copyOf(classLoaders));
+        version++;
+    }
+
+
+    /**
+     * Restore the extension points stored in a discovery snapshot, as long
+     * as it is still valid for the current class loaders. Restored extension
+     * points are not discovered again until they are invalidated or the
+     * class loaders change.
+     * @param file The snapshot file
+     * @return Whether the snapshot was valid and has been restored
+     * @see DiscoverySnapshot
+     */
+    public synchronized boolean restoreSnapshot(Path file) {
+        var restored = DiscoverySnapshot.read(file, snapshot.classLoaders);
+        if (restored == null) {
+            return false;
+        }
+        snapshot = new Snapshot(snapshot.classLoaders, restored);
+        version++;
+        return true;
+    }
+
+
+    /**
+     * Store the extension points currently resolved in a discovery snapshot
+     * @param file The snapshot file
+     * @throws IOException If the file cannot be written
+     * @see DiscoverySnapshot
+     */
+    public void storeSnapshot(Path file) throws IOException {
+        var current = snapshot;
+        DiscoverySnapshot.write(file, current.classLoaders, current.resolvedExtensions.values());
+    }
+
+
+    /**
+     * Set the executor used to scan the class loaders concurrently when
+     * discovering extensions, or <code>null</code> to scan them sequentially
+     */
+    public void discoveryExecutor(Executor discoveryExecutor) {
+        this.discoveryExecutor = discoveryExecutor;
+    }
+
+
+    public Executor discoveryExecutor() {
+        return discoveryExecutor;
+    }
+
+
+    public synchronized void invalidate(Class<?> extensionPoint) {
+        scans.replaceAll((classLoader, scan) -> {
+            Map<Class<?>, Map<Object, ExtensionDescriptor>> otherScans = new ConcurrentHashMap<>(scan);
+            otherScans.remove(extensionPoint);
+            return otherScans;
+        });
+        // the current snapshot is not modified, since a resolution in progress
+        // would put the invalidated extensions back once completed
+        snapshot = snapshot.without(extensionPoint);
+        version++;
+    }
+
+
+    public synchronized void invalidateAll() {
+        scans.replaceAll((classLoader, scan) -> new ConcurrentHashMap<>());
+        indexes = new ConcurrentHashMap<>();
+        snapshot = newSnapshot(snapshot.classLoaders);
+        version++;
+    }
+
+
+    private Snapshot newSnapshot(List<ClassLoader> classLoaders) {
+        for (ClassLoader classLoader : classLoaders) {
+            scans.computeIfAbsent(classLoader, x -> new ConcurrentHashMap<>());
+        }
+        return new Snapshot(classLoaders, Map.of());
+    }
+
+
+    private <T> List<ExtensionDescriptor> discover(
+        Class<T> extensionPoint,
+        List<ClassLoader> classLoaders
+    ) {
+        Executor executor = discoveryExecutor;
+        List<Supplier<Map<Object, ExtensionDescriptor>>> pendingScans = new ArrayList<>();
+        for (ClassLoader classLoader : classLoaders) {
+            if (executor == null || classLoaders.size() < 2) {
+                pendingScans.add(() -> scan(extensionPoint, classLoader));
+            } else {
+                var scan = CompletableFuture.supplyAsync(
+                    () -> scan(extensionPoint, classLoader),
+                    executor
+                );
+                pendingScans.add(() -> Futures.join(scan));
+            }
+        }
+        List<Map<Object, ExtensionDescriptor>> completedScans = new ArrayList<>();
+        for (var scan : pendingScans) {
+            completedScans.add(scan.get());
+        }
+        return InternalExtensionLoader.merge(completedScans);
+    }
+
+
+    private Map<Object, ExtensionDescriptor> scan(Class<?> extensionPoint, ClassLoader classLoader) {
+        var classLoaderScans = scans.get(classLoader);
+        if (classLoaderScans == null) {
+            // the class loader has been removed meanwhile; do not retain it
+            return measuredScan(extensionPoint, classLoader, ExtensionIndex.read(classLoader));
+        }
+        return classLoaderScans.computeIfAbsent(
+            extensionPoint,
+            x -> measuredScan(extensionPoint, classLoader, index(classLoader))
+        );
+    }
+
+
+    private Map<Object, ExtensionDescriptor> measuredScan(
+        Class<?> extensionPoint,
+        ClassLoader classLoader,
+        ExtensionIndex index
+    ) {
+        if (!Metrics.enabled()) {
+            return internalLoader.scan(extensionPoint, classLoader, index);
+        }
+        long start = System.nanoTime();
+        try {
+            return internalLoader.scan(extensionPoint, classLoader, index);
+        } finally {
+            Metrics.reporter().scan(extensionPoint, classLoader, System.nanoTime() - start);
+        }
+    }
+
+
+    private ExtensionIndex index(ClassLoader classLoader) {
+        return indexes.computeIfAbsent(classLoader, ExtensionIndex::read);
+    }
+
+
+    /**
+     * An immutable set of class loaders, along with the extension points
+     * resolved using them
+     */
+    public final class Snapshot {
+
+        private final List<ClassLoader> classLoaders;
+        private final Map<Class<?>, ResolvedExtensions<?>> resolvedExtensions =
+            new ConcurrentHashMap<>();
+        private final Map<String, List<ExtensionDescriptor>> restored;
+
+
+        private Snapshot(
+            List<ClassLoader> classLoaders,
+            Map<String, List<ExtensionDescriptor>> restored
+        ) {
+            this.classLoaders = classLoaders;
+            this.restored = Map.copyOf(restored);
+        }
+
+
+        /*
+         * A copy of this snapshot without the given extension point
+         */
+        private Snapshot without(Class<?> extensionPoint) {
+            Map<String, List<ExtensionDescriptor>> otherRestored = new HashMap<>(restored);
+            otherRestored.remove(extensionPoint.getName());
+            Snapshot copy = new Snapshot(classLoaders, otherRestored);
+            copy.resolvedExtensions.putAll(resolvedExtensions);
+            copy.resolvedExtensions.remove(extensionPoint);
+            return copy;
+        }
+
+
+        /**
+         * @return An unmodifiable list with the class loaders of this snapshot
+         */
+        public List<ClassLoader> classLoaders() {
+            return classLoaders;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        public <T> ResolvedExtensions<T> resolve(Class<T> extensionPoint) {
+            // lock-free read for the already resolved extension points
+            var resolved = (ResolvedExtensions<T>) resolvedExtensions.get(extensionPoint);
+            if (Metrics.enabled()) {
+                Metrics.reporter().resolution(extensionPoint, resolved != null);
+            }
+            if (resolved != null) {
+                return resolved;
+            }
+            return (ResolvedExtensions<T>) resolvedExtensions.computeIfAbsent(
+                extensionPoint,
+                x -> {
+                    var candidates = restored.get(extensionPoint.getName());
+                    return ResolvedExtensions.resolve(
+                        extensionPoint,
+                        classLoaders,
+                        candidates != null ? candidates : discover(extensionPoint, classLoaders)
+                    );
+                }
+            );
+        }
+
+    }
+
+}
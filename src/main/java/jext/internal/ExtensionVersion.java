@@ -3,13 +3,40 @@
  */
 package jext.internal;
 
-import java.util.NoSuchElementException;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Version in form of <code>&lt;major&gt;.&lt;minor&gt;[.&lt;patch&gt;]</code>.
+ * <p>
+ * Versions are immutable and interned: parsing the same string twice returns
+ * the same instance, so versions declared in annotations are parsed only
+ * once.
+ */
+public class ExtensionVersion implements Comparable<ExtensionVersion> {
+
+    /*
+     * Limit of interned versions, so arbitrary strings cannot make the cache
+     * grow indefinitely; beyond it versions are simply parsed every time
+     */
+    private static final int MAX_INTERNED_VERSIONS = 1024;
+
+    private static final Map<String, ExtensionVersion> interned = new ConcurrentHashMap<>();
 
-public class ExtensionVersion {
 
     public static ExtensionVersion of(String version) {
-        return new ExtensionVersion(version);
+        ExtensionVersion parsed = interned.get(version);
+        if (parsed == null) {
+            parsed = new ExtensionVersion(version);
+            if (interned.size() < MAX_INTERNED_VERSIONS) {
+                ExtensionVersion previous = interned.putIfAbsent(version, parsed);
+                if (previous != null) {
+                    parsed = previous;
+                }
+            }
+        }
+        return parsed;
     }
 
     private final int major;
@@ -18,12 +45,30 @@ public class ExtensionVersion {
 
 
     private ExtensionVersion(String version) {
-        var parts = Stream.of(version.split("\\.")).iterator();
+        // trailing separators are ignored, as well as any part after the patch
+        int end = version.length();
+        while (end > 0 && version.charAt(end - 1) == '.') {
+            end--;
+        }
+        if (end == 0) {
+            throw new IllegalArgumentException(
+                "Not valid version number " + version + " (missing major version)"
+            );
+        }
         try {
-            this.major = Integer.parseInt(parts.next());
-            this.minor = parts.hasNext() ? Integer.parseInt(parts.next()) : 0;
-            this.patch = parts.hasNext() ? parts.next() : "";
-        } catch (NoSuchElementException | NumberFormatException e) {
+            int majorEnd = endOfPart(version, 0, end);
+            this.major = Integer.parseInt(version, 0, majorEnd, 10);
+            if (majorEnd == end) {
+                this.minor = 0;
+                this.patch = "";
+            } else {
+                int minorEnd = endOfPart(version, majorEnd + 1, end);
+                this.minor = Integer.parseInt(version, majorEnd + 1, minorEnd, 10);
+                this.patch = minorEnd == end ?
+                    "" :
+                    version.substring(minorEnd + 1, endOfPart(version, minorEnd + 1, end));
+            }
+        } catch (NumberFormatException e) {
             throw new IllegalArgumentException(
                 "Not valid version number " + version + " (" + e.getMessage() + ")"
             );
@@ -31,6 +76,12 @@ public class ExtensionVersion {
     }
 
 
+    private static int endOfPart(String version, int start, int end) {
+        int separator = version.indexOf('.', start);
+        return separator < 0 || separator > end ? end : separator;
+    }
+
+
     public int major() {
         return major;
     }
@@ -50,9 +101,35 @@ public class ExtensionVersion {
     }
 
 
+    /**
+     * Compare versions according their major and minor numbers
+     */
+    @Override
+    public int compareTo(ExtensionVersion otherVersion) {
+        int result = Integer.compare(major, otherVersion.major);
+        return result != 0 ? result : Integer.compare(minor, otherVersion.minor);
+    }
+
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof ExtensionVersion)) {
+            return false;
+        }
+        var otherVersion = (ExtensionVersion) object;
+        return major == otherVersion.major && minor == otherVersion.minor;
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * major + minor;
+    }
+
+
     @Override
     public String toString() {
         return major + "." + minor;
     }
 
-}
\ No newline at end of file
+}
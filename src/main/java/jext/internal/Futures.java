@@ -0,0 +1,59 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+
+/**
+ * Utility methods for the concurrent tasks launched by the extension manager
+ */
+public final class Futures {
+
+    private Futures() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * Wait for the completion of the given future and return its value. If the
+     * task failed, the original exception is rethrown instead of being wrapped
+     * in a {@link CompletionException}, so the behaviour is the same as if the
+     * task had been executed in the current thread.
+     */
+    public static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Obtain the original exception thrown by a task, unwrapping it from the
+     * {@link CompletionException} or {@link ExecutionException} used to
+     * report it
+     */
+    public static Throwable unwrap(Throwable exception) {
+        Throwable cause = exception;
+        while (
+            (cause instanceof CompletionException || cause instanceof ExecutionException) &&
+            cause.getCause() != null
+        ) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.lang.annotation.Annotation;
+import java.util.Objects;
+
+import jext.Extension;
+import jext.ExtensionScope;
+
+
+/**
+ * Implementation of the {@link Extension} annotation built from the values
+ * stored in an {@link ExtensionIndex}, so the metadata of an extension can be
+ * inspected without loading its class. It honours the contract of
+ * {@link Annotation#equals(Object)} and {@link Annotation#hashCode()}.
+ */
+class IndexedExtension implements Extension {
+
+    private final String provider;
+    private final String name;
+    private final String version;
+    private final String extensionPoint;
+    private final String extensionPointVersion;
+    private final boolean externallyManaged;
+    private final ExtensionScope scope;
+    private final int priority;
+    private final boolean overridable;
+    private final String overrides;
+
+
+    IndexedExtension(
+        String provider,
+        String name,
+        String version,
+        String extensionPoint,
+        String extensionPointVersion,
+        boolean externallyManaged,
+        ExtensionScope scope,
+        int priority,
+        boolean overridable,
+        String overrides
+    ) {
+        this.provider = provider;
+        this.name = name;
+        this.version = version;
+        this.extensionPoint = extensionPoint;
+        this.extensionPointVersion = extensionPointVersion;
+        this.externallyManaged = externallyManaged;
+        this.scope = scope;
+        this.priority = priority;
+        this.overridable = overridable;
+        this.overrides = overrides;
+    }
+
+
+    @Override
+    public String provider() {
+        return provider;
+    }
+
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+
+    @Override
+    public String extensionPoint() {
+        return extensionPoint;
+    }
+
+
+    @Override
+    public String extensionPointVersion() {
+        return extensionPointVersion;
+    }
+
+
+    @Override
+    public boolean externallyManaged() {
+        return externallyManaged;
+    }
+
+
+    @Override
+    public ExtensionScope scope() {
+        return scope;
+    }
+
+
+    @Override
+    public int priority() {
+        return priority;
+    }
+
+
+    @Override
+    public boolean overridable() {
+        return overridable;
+    }
+
+
+    @Override
+    public String overrides() {
+        return overrides;
+    }
+
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+        return Extension.class;
+    }
+
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof Extension)) {
+            return false;
+        }
+        Extension other = (Extension) object;
+        return provider.equals(other.provider()) &&
+            name.equals(other.name()) &&
+            version.equals(other.version()) &&
+            extensionPoint.equals(other.extensionPoint()) &&
+            extensionPointVersion.equals(other.extensionPointVersion()) &&
+            externallyManaged == other.externallyManaged() &&
+            scope == other.scope() &&
+            priority == other.priority() &&
+            overridable == other.overridable() &&
+            overrides.equals(other.overrides());
+    }
+
+
+    @Override
+    public int hashCode() {
+        return member("provider", provider) +
+            member("name", name) +
+            member("version", version) +
+            member("extensionPoint", extensionPoint) +
+            member("extensionPointVersion", extensionPointVersion) +
+            member("externallyManaged", externallyManaged) +
+            member("scope", scope) +
+            member("priority", priority) +
+            member("overridable", overridable) +
+            member("overrides", overrides);
+    }
+
+
+    @Override
+    public String toString() {
+        return "@" + Extension.class.getName() + "(" +
+            "provider=\"" + provider + "\", " +
+            "name=\"" + name + "\", " +
+            "version=\"" + version + "\", " +
+            "extensionPoint=\"" + extensionPoint + "\", " +
+            "extensionPointVersion=\"" + extensionPointVersion + "\", " +
+            "externallyManaged=" + externallyManaged + ", " +
+            "scope=" + scope + ", " +
+            "priority=" + priority + ", " +
+            "overridable=" + overridable + ", " +
+            "overrides=\"" + overrides + "\")";
+    }
+
+
+    private static int member(String memberName, Object value) {
+        return (127 * memberName.hashCode()) ^ Objects.hashCode(value);
+    }
+
+}
@@ -4,8 +4,14 @@
 package jext.internal;
 
 
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.*;
 
 import org.slf4j.Logger;
@@ -18,105 +24,316 @@ import jext.ExtensionLoader;
 public class InternalExtensionLoader implements ExtensionLoader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(InternalExtensionLoader.class);
+    private static final String SERVICES = "META-INF/services/";
 
-    private static final Map<Class<?>, Object> globalInstances = new ConcurrentHashMap<>();
-    private static final Map<String, Map<Class<?>, Object>> instancesPerSession =
+    /*
+     * Caches related to extension classes are bound to the classes themselves
+     * (or weakly referenced), so they do not prevent discarded class loaders
+     * from being garbage collected
+     */
+    private static final ClassValue<ExtensionInstances> instances = new ClassValue<>() {
+        @Override
+        protected ExtensionInstances computeValue(Class<?> type) {
+            return new ExtensionInstances();
+        }
+    };
+    private static final ClassValue<Boolean> acceptedClasses = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return accept(type);
+        }
+    };
+    private static final Map<Class<?>, Boolean> instantiatedClasses =
+        Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<String, Map<Class<?>, Boolean>> classesPerSession =
         new ConcurrentHashMap<>();
-    private static final Set<Class<?>> withoutMetadata = ConcurrentHashMap.newKeySet();
-    private static final Set<Class<?>> externallyManaged = ConcurrentHashMap.newKeySet();
 
     @Override
     public <T> List<T> load(Class<T> type, List<ClassLoader> classLoaders, String sessionID) {
-        return classLoaders.stream()
-           .flatMap(classLoader -> load(type,classLoader))
-           .filter(this::filterPrototypesWithoutMetadata)
-           .filter(this::filterExternallyManaged)
-           .map(prototype -> instantiate(prototype, sessionID))
+        return discover(type, classLoaders, ExtensionIndex::read).stream()
+           .map(descriptor -> instantiate(descriptor, type, sessionID))
            .filter(Optional::isPresent)
            .map(Optional::get)
            .collect(Collectors.toList());
     }
 
 
+    /**
+     * Discover the extensions of the given type that are handled by this
+     * loader, without duplicates and without creating any instance.
+     * <p>
+     * The extensions declared in a jar that includes an {@link ExtensionIndex}
+     * are described using the indexed metadata, so their classes are not
+     * loaded at all. Otherwise, the classes are loaded (but not initialized)
+     * in order to inspect their annotations.
+     * @param type The extension point
+     * @param classLoaders The class loaders used to discover extensions
+     * @param indexes The function providing the extension index of each class loader
+     */
+    public <T> List<ExtensionDescriptor> discover(
+        Class<T> type,
+        List<ClassLoader> classLoaders,
+        Function<ClassLoader, ExtensionIndex> indexes
+    ) {
+        Set<Object> discovered = new HashSet<>();
+        List<ExtensionDescriptor> descriptors = new ArrayList<>();
+        for (ClassLoader classLoader : classLoaders) {
+            // skip the extensions already discovered by previous class loaders
+            var scanned = scan(
+                type,
+                classLoader,
+                indexes.apply(classLoader),
+                key -> !discovered.contains(key)
+            );
+            merge(scanned, discovered, descriptors);
+        }
+        return descriptors;
+    }
+
+
+    /**
+     * Scan a single class loader, discovering the extensions of the given
+     * type without creating any instance. Scans of different class loaders
+     * are independent, so they can be performed concurrently and cached
+     * separately; use {@link #merge(List)} to combine them.
+     * @param type The extension point
+     * @param classLoader The class loader to scan
+     * @param index The extension index of the class loader
+     * @return The result of the scan, keyed by the identity of each extension
+     * declaration. Declarations that are not suitable are mapped to <code>null</code>
+     */
+    public <T> Map<Object, ExtensionDescriptor> scan(
+        Class<T> type,
+        ClassLoader classLoader,
+        ExtensionIndex index
+    ) {
+        return Collections.unmodifiableMap(scan(type, classLoader, index, key -> true));
+    }
+
+
+    /**
+     * Combine the scans of several class loaders. The result is the same
+     * that would be obtained by {@link #discover(Class, List, Function)}: when
+     * the same extension is visible from several class loaders, the first
+     * one in the list prevails.
+     * @param scans The scans, in the same order of their class loaders
+     */
+    public static List<ExtensionDescriptor> merge(List<Map<Object, ExtensionDescriptor>> scans) {
+        Set<Object> discovered = new HashSet<>();
+        List<ExtensionDescriptor> descriptors = new ArrayList<>();
+        for (var scanned : scans) {
+            merge(scanned, discovered, descriptors);
+        }
+        return descriptors;
+    }
+
+
+    private <T> Map<Object, ExtensionDescriptor> scan(
+        Class<T> type,
+        ClassLoader classLoader,
+        ExtensionIndex index,
+        Predicate<Object> pending
+    ) {
+        Map<Object, ExtensionDescriptor> scanned = new LinkedHashMap<>();
+        if (type.getModule().isNamed()) {
+            // providers of named modules are declared in module descriptors,
+            // only reachable through the service loader
+            load(type, classLoader)
+                .filter(extensionClass -> !scanned.containsKey(extensionClass))
+                .filter(pending)
+                .forEach(extensionClass -> scanned.put(
+                    extensionClass,
+                    isAccepted(extensionClass) ?
+                        ExtensionDescriptor.of(extensionClass) :
+                        null
+                ));
+        } else {
+            scanDeclared(type, classLoader, index, pending, scanned);
+        }
+        return scanned;
+    }
+
+
+    private static void merge(
+        Map<Object, ExtensionDescriptor> scanned,
+        Set<Object> discovered,
+        List<ExtensionDescriptor> descriptors
+    ) {
+        scanned.forEach((key, descriptor) -> {
+            if (discovered.add(key) && descriptor != null) {
+                descriptors.add(descriptor);
+            }
+        });
+    }
+
+
+    /**
+     * Obtain an instance of the given extension, either creating a new
+     * one or reusing an existing one according its scope
+     */
+    public <T> Optional<T> instantiate(
+        ExtensionDescriptor descriptor,
+        Class<T> type,
+        String sessionID
+    ) {
+        if (descriptor.instance() != null) {
+            return Optional.of(type.cast(descriptor.instance()));
+        }
+        Class<?> extensionClass = loadClass(descriptor, type);
+        if (extensionClass == null) {
+            return Optional.empty();
+        }
+        Object instance;
+        switch (descriptor.metadata().scope()) {
+            case SESSION:
+                instance = instances.get(extensionClass).perSession.computeIfAbsent(
+                    sessionID,
+                    x -> newSessionInstance(descriptor, extensionClass, sessionID)
+                );
+                break;
+            case GLOBAL:
+                instance = globalInstance(descriptor, extensionClass);
+                break;
+            case THREAD:
+                instance = instances.get(extensionClass).perThread.computeIfAbsent(
+                    sessionID,
+                    x -> newThreadInstances(descriptor, extensionClass, sessionID)
+                ).get();
+                break;
+            default:
+                instance = newInstance(descriptor, extensionClass);
+        }
+        return Optional.ofNullable(type.cast(instance));
+    }
+
+
     @Override
     public void invalidateSession(String sessionID) {
-        instancesPerSession.remove(sessionID);
+        Map<Class<?>, Boolean> sessionClasses = classesPerSession.remove(sessionID);
+        if (sessionClasses != null) {
+            for (Class<?> extensionClass : copyOf(sessionClasses)) {
+                ExtensionInstances classInstances = instances.get(extensionClass);
+                classInstances.perSession.remove(sessionID);
+                ThreadInstances threadInstances = classInstances.perThread.remove(sessionID);
+                if (threadInstances != null) {
+                    threadInstances.release();
+                }
+            }
+        }
     }
 
 
-    private boolean filterPrototypesWithoutMetadata(Object prototype) {
-        Class<?> prototypeClass = prototype.getClass();
-        if (withoutMetadata.contains(prototypeClass)) {
-            return false;
+    /**
+     * Discard every instance (either global, belonging to any session or to any thread) of
+     * the extension classes defined by the given class loader, so they will
+     * be created again the next time they are requested.
+     * <p>
+     * This is not required in order to garbage-collect a discarded class
+     * loader, but it releases the instances immediately instead of waiting
+     * for the class loader to be collected.
+     */
+    public void release(ClassLoader classLoader) {
+        for (Class<?> extensionClass : copyOf(instantiatedClasses)) {
+            if (extensionClass.getClassLoader() == classLoader) {
+                instantiatedClasses.remove(extensionClass);
+                instances.get(extensionClass).perThread.values().forEach(ThreadInstances::release);
+                instances.remove(extensionClass);
+            }
         }
-        var metadata = prototypeClass.getAnnotation(jext.Extension.class);
-        if (metadata == null) {
-            LOGGER.debug(
-                "Class {} is not annotated with {} so it will be ignored",
-                prototypeClass.getCanonicalName(),
-                jext.Extension.class.getCanonicalName()
-            );
-            withoutMetadata.add(prototypeClass);
-            return false;
+    }
+
+
+    private Object globalInstance(ExtensionDescriptor descriptor, Class<?> extensionClass) {
+        ExtensionInstances classInstances = instances.get(extensionClass);
+        synchronized (classInstances) {
+            if (classInstances.global == null) {
+                classInstances.global = newInstance(descriptor, extensionClass);
+                instantiatedClasses.put(extensionClass, Boolean.TRUE);
+            }
+            return classInstances.global;
+        }
+    }
+
+
+    private Object newSessionInstance(
+        ExtensionDescriptor descriptor,
+        Class<?> extensionClass,
+        String sessionID
+    ) {
+        Object instance = newInstance(descriptor, extensionClass);
+        registerSessionClass(extensionClass, sessionID);
+        return instance;
+    }
+
+
+    private ThreadInstances newThreadInstances(
+        ExtensionDescriptor descriptor,
+        Class<?> extensionClass,
+        String sessionID
+    ) {
+        registerSessionClass(extensionClass, sessionID);
+        return new ThreadInstances(() -> newInstance(descriptor, extensionClass));
+    }
+
+
+    private static void registerSessionClass(Class<?> extensionClass, String sessionID) {
+        instantiatedClasses.put(extensionClass, Boolean.TRUE);
+        classesPerSession
+            .computeIfAbsent(sessionID, x -> Collections.synchronizedMap(new WeakHashMap<>()))
+            .put(extensionClass, Boolean.TRUE);
+    }
+
+
+    private static List<Class<?>> copyOf(Map<Class<?>, Boolean> classes) {
+        synchronized (classes) {
+            return new ArrayList<>(classes.keySet());
         }
-        return true;
     }
 
 
+    private static boolean isAccepted(Class<?> extensionClass) {
+        return acceptedClasses.get(extensionClass);
+    }
+
 
-    private boolean filterExternallyManaged(Object prototype) {
-        Class<?> prototypeClass = prototype.getClass();
-        if (externallyManaged.contains(prototypeClass)) {
+    private static boolean accept(Class<?> extensionClass) {
+        var metadata = extensionClass.getAnnotation(jext.Extension.class);
+        if (metadata == null) {
+            LOGGER.debug(
+                "Class {} is not annotated with {} so it will be ignored",
+                extensionClass.getCanonicalName(),
+                jext.Extension.class.getCanonicalName()
+            );
             return false;
         }
-        var metadata = prototypeClass.getAnnotation(jext.Extension.class);
         if (metadata.externallyManaged()) {
             LOGGER.debug(
                 "Class {} is externally managed and ignored by the internal extension loader",
-                prototypeClass.getCanonicalName()
+                extensionClass.getCanonicalName()
             );
-            externallyManaged.add(prototypeClass);
             return false;
         }
         return true;
     }
 
 
-
-    @SuppressWarnings("unchecked")
-    private <T> Optional<T> instantiate (T prototype, String sessionID) {
-
-        Class<?> prototypeClass = prototype.getClass();
-        var metadata = prototypeClass.getAnnotation(jext.Extension.class);
-        T instance = null;
-        switch (metadata.scope()) {
-            case LOCAL:
-                instance = newInstance(prototypeClass);
-                break;
-            case SESSION:
-                instance = (T) instancesPerSession
-               .computeIfAbsent(sessionID, x-> new ConcurrentHashMap<>())
-               .computeIfAbsent(prototypeClass, x -> newInstance(prototypeClass));
-                break;
-            case GLOBAL:
-                instance = (T) globalInstances
-               .computeIfAbsent(prototypeClass, x -> newInstance(prototypeClass));
-                break;
-            default:
-                instance = prototype;
+    private Object newInstance(ExtensionDescriptor descriptor, Class<?> type) {
+        Supplier<?> instantiator = descriptor.instantiator();
+        if (instantiator == null) {
+            instantiator = instantiatorOf(descriptor, type);
+            descriptor.instantiator(instantiator);
         }
-        return Optional.ofNullable(instance);
-    }
-
-
-    @SuppressWarnings("unchecked")
-    private <T> T newInstance(Class<?> type) {
         try {
-            return (T) type.getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
+            if (!Metrics.enabled()) {
+                return instantiator.get();
+            }
+            long start = System.nanoTime();
+            Object instance = instantiator.get();
+            Metrics.reporter().instantiation(type, System.nanoTime() - start);
+            return instance;
+        } catch (Exception e) {
             LOGGER.error(
-                "Class {} cannot be instantiated, a public constructor with " +
-                "zero arguments is required [error was: {}]",
+                "Class {} cannot be instantiated [error was: {}]",
                 type.getCanonicalName(),
                 e.toString()
             );
@@ -125,11 +342,36 @@ public class InternalExtensionLoader implements ExtensionLoader {
     }
 
 
-    private <T> Stream<T> load(Class<T> type, ClassLoader classLoader) {
+    /*
+     * Use the factory generated by the annotation processor if it exists, so
+     * no reflection is involved when creating new instances. Otherwise, use
+     * the instantiator cached for the extension class.
+     */
+    private Supplier<?> instantiatorOf(ExtensionDescriptor descriptor, Class<?> type) {
+        if (descriptor.factoryClassName() != null) {
+            try {
+                return (Supplier<?>) descriptor.factoryClass().getConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+                LOGGER.debug(
+                    "Cannot use the generated factory {}, the constructor will be used instead [error was: {}]",
+                    descriptor.factoryClassName(),
+                    e.toString()
+                );
+            }
+        }
+        return ExtensionInstantiators.of(type);
+    }
+
+
+    private <T> Stream<Class<? extends T>> load(Class<T> type, ClassLoader classLoader) {
         try {
             // dynamically declaration of 'use' directive, otherwise it will cause an error
             InternalExtensionLoader.class.getModule().addUses(type);
-            return ServiceLoader.load(type, classLoader).stream().map(ServiceLoader.Provider::get);
+            // only the provider type is inspected; instances are created on demand
+            return ServiceLoader.load(type, classLoader).stream()
+                .map(ServiceLoader.Provider::type)
+                .collect(Collectors.toList())
+                .stream();
         } catch (ServiceConfigurationError e) {
             LOGGER.error("Error loading extension of type {}",type,e);
             return Stream.empty();
@@ -137,10 +379,124 @@ public class InternalExtensionLoader implements ExtensionLoader {
     }
 
 
+    private <T> void scanDeclared(
+        Class<T> type,
+        ClassLoader classLoader,
+        ExtensionIndex index,
+        Predicate<Object> pending,
+        Map<Object, ExtensionDescriptor> scanned
+    ) {
+        String resourcePath = SERVICES + type.getName();
+        try {
+            Enumeration<URL> resources = PluginClassLoader.resources(classLoader, resourcePath);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                String root = ExtensionIndex.rootOf(resource, resourcePath);
+                for (String className : readServiceDeclarations(resource)) {
+                    // the same declaration may be visible from several class loaders
+                    String key = root + "\t" + className;
+                    if (scanned.containsKey(key) || !pending.test(key)) {
+                        continue;
+                    }
+                    scanned.put(key, describe(type, classLoader, index, root, className));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error loading extension of type {}",type,e);
+        }
+    }
+
+
+    private <T> ExtensionDescriptor describe(
+        Class<T> type,
+        ClassLoader classLoader,
+        ExtensionIndex index,
+        String root,
+        String className
+    ) {
+        var entry = index.entry(root, type.getName(), className);
+        if (entry == null && type.getCanonicalName() != null) {
+            entry = index.entry(root, type.getCanonicalName(), className);
+        }
+        if (entry != null) {
+            if (entry.metadata().externallyManaged()) {
+                LOGGER.debug(
+                    "Class {} is externally managed and ignored by the internal extension loader",
+                    className
+                );
+                return null;
+            }
+            return ExtensionDescriptor.indexed(entry, classLoader);
+        }
+        Class<?> extensionClass;
+        try {
+            extensionClass = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.error("Error loading extension {} of type {} [error was: {}]",
+                className, type, e.toString());
+            return null;
+        }
+        if (!type.isAssignableFrom(extensionClass)) {
+            LOGGER.error("Class {} is not a subtype of {}; ignored", className, type);
+            return null;
+        }
+        if (!isAccepted(extensionClass)) {
+            return null;
+        }
+        return ExtensionDescriptor.of(extensionClass);
+    }
+
+
+    private Class<?> loadClass(ExtensionDescriptor descriptor, Class<?> type) {
+        Class<?> extensionClass;
+        try {
+            extensionClass = descriptor.extensionClass();
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.error("Class {} cannot be loaded [error was: {}]", descriptor, e.toString());
+            return null;
+        }
+        if (!type.isAssignableFrom(extensionClass)) {
+            LOGGER.error("Class {} is not a subtype of {}; ignored", descriptor, type);
+            return null;
+        }
+        return extensionClass;
+    }
+
+
+    private static List<String> readServiceDeclarations(URL resource) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (var reader = new BufferedReader(
+            new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)
+        )) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    classNames.add(line);
+                }
+            }
+        }
+        return classNames;
+    }
+
+
     @Override
     public String toString() {
         return "Built-in extension loader";
     }
 
 
+    /*
+     * The shared instances of an extension class
+     */
+    private static final class ExtensionInstances {
+        private final Map<String, Object> perSession = new ConcurrentHashMap<>();
+        private final Map<String, ThreadInstances> perThread = new ConcurrentHashMap<>();
+        private Object global;
+    }
+
 }
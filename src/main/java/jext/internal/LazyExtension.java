@@ -0,0 +1,111 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import jext.Extension;
+
+
+/**
+ * Proxy of an extension whose instance is obtained the first time any of its
+ * methods is invoked. The metadata of the extension is available without
+ * creating the instance.
+ * <p>
+ * The methods <code>equals</code>, <code>hashCode</code> and
+ * <code>toString</code> are answered by the proxy itself, so storing the
+ * proxy in a collection or logging it does not create the instance either.
+ */
+public final class LazyExtension implements InvocationHandler {
+
+    private final ExtensionDescriptor descriptor;
+    private final Supplier<? extends Optional<?>> instantiator;
+    private volatile Object instance;
+
+
+    private LazyExtension(ExtensionDescriptor descriptor, Supplier<? extends Optional<?>> instantiator) {
+        this.descriptor = descriptor;
+        this.instantiator = instantiator;
+    }
+
+
+    /**
+     * Create a proxy of the given extension
+     * @param extensionPoint The extension point, that must be an interface
+     * @param descriptor The extension descriptor
+     * @param instantiator The function obtaining the actual instance
+     */
+    public static <T> T proxy(
+        Class<T> extensionPoint,
+        ExtensionDescriptor descriptor,
+        Supplier<Optional<T>> instantiator
+    ) {
+        return extensionPoint.cast(Proxy.newProxyInstance(
+            extensionPoint.getClassLoader(),
+            new Class<?>[] { extensionPoint },
+            new LazyExtension(descriptor, instantiator)
+        ));
+    }
+
+
+    /**
+     * @return The metadata of the extension, if the given object is a lazy
+     * extension proxy
+     */
+    public static Optional<Extension> metadataOf(Object object) {
+        if (!Proxy.isProxyClass(object.getClass())) {
+            return Optional.empty();
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(object);
+        return handler instanceof LazyExtension ?
+            Optional.of(((LazyExtension) handler).descriptor.metadata()) :
+            Optional.empty();
+    }
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Lazy extension " + descriptor;
+                default:
+                    break;
+            }
+        }
+        try {
+            return method.invoke(instance(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+
+    private Object instance() {
+        Object current = instance;
+        if (current == null) {
+            synchronized (this) {
+                current = instance;
+                if (current == null) {
+                    current = instantiator.get().orElseThrow(() -> new IllegalStateException(
+                        "Extension " + descriptor + " cannot be instantiated"
+                    ));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.ExtensionLoader;
+import jext.ExtensionMetrics;
+
+
+/**
+ * Access to the {@link ExtensionMetrics} implementations. Measurements must
+ * be guarded by {@link #enabled()}, which is constant once this class is
+ * initialized, so they have no cost when there is no implementation.
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    private static final ExtensionMetrics reporter = load();
+    private static final boolean enabled = reporter != null;
+
+
+    private Metrics() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * @return Whether any {@link ExtensionMetrics} implementation is present
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+
+    /**
+     * @return The metrics implementation; it should only be used if
+     * {@link #enabled()} is <code>true</code>
+     */
+    public static ExtensionMetrics reporter() {
+        return reporter;
+    }
+
+
+    private static ExtensionMetrics load() {
+        List<ExtensionMetrics> implementations = new ArrayList<>();
+        try {
+            ServiceLoader.load(ExtensionMetrics.class).forEach(implementations::add);
+        } catch (ServiceConfigurationError e) {
+            LOGGER.error("Error loading the extension metrics implementations; metrics are disabled", e);
+            return null;
+        }
+        if (implementations.isEmpty()) {
+            return null;
+        }
+        LOGGER.debug("Using extension metrics implementations {}", implementations);
+        return implementations.size() == 1 ? implementations.get(0) : new Composite(implementations);
+    }
+
+
+    /*
+     * Several implementations receiving every metric
+     */
+    private static final class Composite implements ExtensionMetrics {
+
+        private final ExtensionMetrics[] implementations;
+
+        private Composite(List<ExtensionMetrics> implementations) {
+            this.implementations = implementations.toArray(new ExtensionMetrics[0]);
+        }
+
+        @Override
+        public void lookup(Class<?> extensionPoint, long nanos) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.lookup(extensionPoint, nanos);
+            }
+        }
+
+        @Override
+        public void scan(Class<?> extensionPoint, ClassLoader classLoader, long nanos) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.scan(extensionPoint, classLoader, nanos);
+            }
+        }
+
+        @Override
+        public void resolution(Class<?> extensionPoint, boolean cached) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.resolution(extensionPoint, cached);
+            }
+        }
+
+        @Override
+        public void instantiation(Class<?> extensionClass, long nanos) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.instantiation(extensionClass, nanos);
+            }
+        }
+
+        @Override
+        public void externalLoad(ExtensionLoader extensionLoader, Class<?> extensionPoint, long nanos) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.externalLoad(extensionLoader, extensionPoint, nanos);
+            }
+        }
+
+        @Override
+        public void liveSessions(long liveSessions) {
+            for (ExtensionMetrics implementation : implementations) {
+                implementation.liveSessions(liveSessions);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Enumeration;
+
+
+/**
+ * Parallel-capable class loader of a single plugin jar.
+ * <p>
+ * Classes are loaded using the usual parent-first delegation, but extensions
+ * are only discovered among the resources of the jar itself, so scanning a
+ * plugin does not involve its parent class loader at all.
+ */
+public class PluginClassLoader extends URLClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+
+    /**
+     * Obtain the resources of the given class loader that are relevant for
+     * discovering extensions. For plugin class loaders, only the resources
+     * of the plugin itself are considered.
+     */
+    static Enumeration<URL> resources(ClassLoader classLoader, String name) throws IOException {
+        if (classLoader instanceof PluginClassLoader) {
+            return ((PluginClassLoader) classLoader).findResources(name);
+        }
+        return classLoader.getResources(name);
+    }
+
+
+    private final Path jar;
+
+
+    public PluginClassLoader(Path jar, ClassLoader parent) throws IOException {
+        super(new URL[] { jar.toUri().toURL() }, parent);
+        this.jar = jar;
+    }
+
+
+    /** @return The jar file of the plugin */
+    public Path jar() {
+        return jar;
+    }
+
+
+    @Override
+    public String toString() {
+        return "PluginClassLoader[" + jar + "]";
+    }
+
+}
@@ -0,0 +1,349 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.Extension;
+import jext.ExtensionPoint;
+import jext.ExtensionQuery;
+
+
+/**
+ * The resolved state of a single extension point: the extensions discovered
+ * by the built-in loader, already validated, with overridden extensions
+ * removed and sorted by priority. It also keeps the validation verdicts of
+ * the classes provided by external loaders.
+ * <p>
+ * All these operations rely only on the extension metadata, so indexed
+ * extensions are not loaded until they are instantiated.
+ * <p>
+ * The resolved extensions are kept in an array already sorted by priority,
+ * so retrieving them in order does not require any further work. They are
+ * also indexed by provider and name, and the results of each
+ * {@link ExtensionQuery} are cached, so structured queries do not require
+ * checking every extension. Since a new instance is created whenever the
+ * extension point is resolved again, cached results never become stale.
+ * <p>
+ * Instances are safe to be shared between threads: the resolved extensions
+ * are immutable, and the validation verdicts are kept in concurrent sets
+ * (validating the same class twice is harmless, since the verdict is always
+ * the same).
+ */
+public class ResolvedExtensions<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedExtensions.class);
+
+    /*
+     * Limit of cached query results per extension point, so arbitrary queries
+     * cannot make the cache grow indefinitely
+     */
+    private static final int MAX_CACHED_QUERIES = 256;
+
+    /*
+     * Compatibility verdicts per extension point class, by the extension
+     * point version declared by the extensions
+     */
+    private static final ClassValue<Map<String, Boolean>> compatibilityVerdicts = new ClassValue<>() {
+        @Override
+        protected Map<String, Boolean> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+
+    static <T> ResolvedExtensions<T> resolve(
+        Class<T> extensionPoint,
+        List<ClassLoader> classLoaders,
+        List<ExtensionDescriptor> candidates
+    ) {
+        LOGGER.debug("[Extensions of type {}] :: Resolving using class loaders {}...",
+            extensionPoint, classLoaders);
+        return new ResolvedExtensions<>(extensionPoint, candidates);
+    }
+
+
+    private final Class<T> extensionPoint;
+    private final ExtensionPoint extensionPointData;
+    private final Set<String> validClasses = ConcurrentHashMap.newKeySet();
+    private final Set<String> invalidClasses = ConcurrentHashMap.newKeySet();
+    private final ExtensionDescriptor[] sortedExtensions;
+    private final List<ExtensionDescriptor> extensions;
+    private final Map<String, List<ExtensionDescriptor>> extensionsByProvider;
+    private final Map<String, List<ExtensionDescriptor>> extensionsByName;
+    private final Map<ExtensionQuery, List<ExtensionDescriptor>> queryResults =
+        new ConcurrentHashMap<>();
+
+
+    private ResolvedExtensions(Class<T> extensionPoint, List<ExtensionDescriptor> candidates) {
+        this.extensionPoint = extensionPoint;
+        this.extensionPointData = ExtensionLoadContext.dataOf(extensionPoint);
+        List<ExtensionDescriptor> validCandidates = candidates.stream()
+            .filter(candidate -> isValid(candidate, false))
+            .collect(Collectors.toCollection(ArrayList::new));
+        removeOverridenExtensions(validCandidates, candidate -> candidate);
+        validCandidates.sort(byPriority());
+        this.sortedExtensions = validCandidates.toArray(new ExtensionDescriptor[0]);
+        this.extensions = Collections.unmodifiableList(Arrays.asList(sortedExtensions));
+        this.extensionsByProvider = indexBy(extension -> extension.metadata().provider());
+        this.extensionsByName = indexBy(extension -> extension.metadata().name());
+    }
+
+
+    public Class<T> extensionPoint() {
+        return extensionPoint;
+    }
+
+
+    /**
+     * @return The valid extensions discovered by the built-in loader,
+     * without overridden extensions and sorted by priority
+     */
+    public List<ExtensionDescriptor> extensions() {
+        return extensions;
+    }
+
+
+    /**
+     * @return The number of valid extensions discovered by the built-in loader
+     */
+    public int size() {
+        return sortedExtensions.length;
+    }
+
+
+    /**
+     * @return The extension at the given position of the priority order
+     */
+    public ExtensionDescriptor get(int index) {
+        return sortedExtensions[index];
+    }
+
+
+    /**
+     * Select the extensions discovered by the built-in loader that satisfy
+     * the given query, in priority order. The candidates are obtained from the
+     * indexes by provider and name, when the query restricts them, and the
+     * result is cached for further invocations.
+     * @param query The query
+     * @return An unmodifiable list with the selected extensions
+     */
+    public List<ExtensionDescriptor> select(ExtensionQuery query) {
+        var result = queryResults.get(query);
+        if (result == null) {
+            result = evaluate(query);
+            if (queryResults.size() < MAX_CACHED_QUERIES) {
+                queryResults.putIfAbsent(query, result);
+            }
+        }
+        return result;
+    }
+
+
+    private List<ExtensionDescriptor> evaluate(ExtensionQuery query) {
+        List<ExtensionDescriptor> candidates = extensions;
+        if (query.provider() != null) {
+            candidates = extensionsByProvider.getOrDefault(query.provider(), List.of());
+        }
+        if (query.name() != null) {
+            var candidatesByName = extensionsByName.getOrDefault(query.name(), List.of());
+            if (candidatesByName.size() < candidates.size()) {
+                candidates = candidatesByName;
+            }
+        }
+        return candidates.stream()
+            .filter(candidate -> query.matches(candidate.metadata()))
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+
+    /*
+     * Group the extensions by the given (case insensitive) key, keeping the
+     * priority order within each group
+     */
+    private Map<String, List<ExtensionDescriptor>> indexBy(Function<ExtensionDescriptor, String> key) {
+        Map<String, List<ExtensionDescriptor>> index = new HashMap<>();
+        for (ExtensionDescriptor extension : sortedExtensions) {
+            index.computeIfAbsent(key.apply(extension).toLowerCase(Locale.ROOT), x -> new ArrayList<>())
+                .add(extension);
+        }
+        index.replaceAll((x, group) -> List.copyOf(group));
+        return Map.copyOf(index);
+    }
+
+
+    /**
+     * Merge the given extensions, provided by external loaders, with the
+     * extensions discovered by the built-in loader, keeping the priority
+     * order. Since the latter are already sorted, only the given extensions
+     * have to be sorted. Extensions with the same priority are placed in the
+     * same order as a stable sort of the concatenation of both lists.
+     * @param externalExtensions The extensions provided by external loaders,
+     * that will be sorted
+     * @return A new list with all the extensions sorted by priority
+     */
+    public List<ExtensionDescriptor> mergeByPriority(List<ExtensionDescriptor> externalExtensions) {
+        externalExtensions.sort(byPriority());
+        List<ExtensionDescriptor> merged = new ArrayList<>(
+            sortedExtensions.length + externalExtensions.size()
+        );
+        int i = 0;
+        int j = 0;
+        while (i < sortedExtensions.length && j < externalExtensions.size()) {
+            if (externalExtensions.get(j).priority() < sortedExtensions[i].priority()) {
+                merged.add(externalExtensions.get(j++));
+            } else {
+                merged.add(sortedExtensions[i++]);
+            }
+        }
+        while (i < sortedExtensions.length) {
+            merged.add(sortedExtensions[i++]);
+        }
+        while (j < externalExtensions.size()) {
+            merged.add(externalExtensions.get(j++));
+        }
+        return merged;
+    }
+
+
+    /**
+     * Check whether the given extension is valid for the extension point,
+     * caching the verdict for further invocations
+     * @param extension The extension descriptor
+     * @param externallyManaged Whether the extension was provided by an external loader
+     */
+    public boolean isValid(ExtensionDescriptor extension, boolean externallyManaged) {
+        String extensionClass = extension.className();
+        if (invalidClasses.contains(extensionClass)) {
+            LOGGER.debug(
+                "[Extensions of type {}] :: Found {} but ignored (it is marked as invalid)",
+                extensionPoint,
+                extensionClass
+            );
+            return false;
+        }
+        if (validClasses.contains(extensionClass)) {
+            return true;
+        }
+        boolean valid = validate(extension, externallyManaged);
+        if (valid) {
+            LOGGER.debug("[Extensions of type {}] :: Found {}", extensionPoint, extensionClass);
+            validClasses.add(extensionClass);
+        } else {
+            invalidClasses.add(extensionClass);
+        }
+        return valid;
+    }
+
+
+    private boolean validate(ExtensionDescriptor extension, boolean externallyManaged) {
+
+        Extension extensionData = extension.metadata();
+
+        // this should not happen, but there is no guarantee that external
+        // service loaders provides non-externally managed extensions
+        if (extensionData.externallyManaged() != externallyManaged) {
+            LOGGER.debug(
+                "Class {} is{} externally managed and the extension loader is{}; ignored",
+                extension,
+                extensionData.externallyManaged() ? "" : " not",
+                externallyManaged ? "" : " not"
+            );
+            return false;
+        }
+
+        if (!areCompatible(extensionData)) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(
+                    "Extension point version of {} ({}) is not compatible with expected version {}",
+                    id(extensionData),
+                    extensionData.extensionPointVersion(),
+                    extensionPointData.version()
+                );
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Remove from the given list those elements whose extension is overridden
+     * by the extension of another element of the list
+     * @param elements The list of elements, that will be modified
+     * @param descriptorOf Function that obtains the extension descriptor of each element
+     */
+    public static <E> void removeOverridenExtensions(
+        List<E> elements,
+        Function<? super E, ExtensionDescriptor> descriptorOf
+    ) {
+
+        Map<String, E> overridableExtensionClassNames = new HashMap<>();
+        for (E element : elements) {
+            ExtensionDescriptor descriptor = descriptorOf.apply(element);
+            if (descriptor.metadata().overridable()) {
+                overridableExtensionClassNames.put(descriptor.canonicalName(), element);
+            }
+        }
+
+        for (E element : new ArrayList<>(elements)) {
+            Extension metadata = descriptorOf.apply(element).metadata();
+            E overridable = overridableExtensionClassNames.get(metadata.overrides());
+            if (overridable != null) {
+                elements.remove(overridable);
+                if (LOGGER.isInfoEnabled()) {
+                    LOGGER.info(
+                        "Extension {} overrides extension {}",
+                        id(metadata),
+                        id(descriptorOf.apply(overridable).metadata())
+                    );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return A comparator that sorts extensions according their priority
+     */
+    public static Comparator<ExtensionDescriptor> byPriority() {
+        return Comparator.comparingInt(ExtensionDescriptor::priority);
+    }
+
+
+    private boolean areCompatible(Extension extensionData) {
+        // verdicts only depend on the declared versions, so they are kept
+        // along with the extension point class and survive invalidations
+        var verdicts = compatibilityVerdicts.get(extensionPoint);
+        Boolean compatible = verdicts.get(extensionData.extensionPointVersion());
+        if (compatible == null) {
+            ExtensionVersion extensionPointVersion = ExtensionVersion.of(extensionPointData.version());
+            try {
+                ExtensionVersion extensionDataPointVersion = ExtensionVersion.of(
+                    extensionData.extensionPointVersion()
+                );
+                compatible = extensionDataPointVersion.isCompatibleWith(extensionPointVersion);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Bad extensionPointVersion in {}", id(extensionData));
+                throw e;
+            }
+            verdicts.put(extensionData.extensionPointVersion(), compatible);
+        }
+        return compatible;
+    }
+
+
+    private static String id(Extension extension) {
+        return extension.provider() + ":" + extension.name() + ":" + extension.version();
+    }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.lang.ref.Cleaner;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jext.ExtensionLoader;
+
+
+/**
+ * Lifecycle of the sessions of the extension managers. Session instances are
+ * kept by the extension loaders, not by the managers, so they have to be
+ * released explicitly. This class ensures that it eventually happens:
+ * <ul>
+ *   <li>when the manager is closed</li>
+ *   <li>when the manager becomes unreachable, using a {@link Cleaner}</li>
+ *   <li>when the session has been idle longer than its idle timeout, if
+ *   any; in that case the session remains usable, and new session instances
+ *   would be created if requested again</li>
+ * </ul>
+ */
+public final class Sessions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Sessions.class);
+
+    private static final long MIN_SWEEP_PERIOD = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_SWEEP_PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Cleaner cleaner = Cleaner.create();
+    private static final Map<String, Session> liveSessions = new ConcurrentHashMap<>();
+    private static final AtomicLong closedSessions = new AtomicLong();
+    private static final AtomicLong collectedSessions = new AtomicLong();
+    private static final AtomicLong expiredSessions = new AtomicLong();
+
+    private static ScheduledExecutorService sweeper;
+    private static ScheduledFuture<?> sweep;
+    private static long sweepPeriod = Long.MAX_VALUE;
+
+
+    private Sessions() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * Register a new session, that will be released automatically when the
+     * given owner becomes unreachable
+     * @param owner The object whose reachability determines the session lifetime
+     * @param sessionID The session identifier
+     * @param extensionLoaders The loaders that may keep session instances
+     * @param idleTimeout The idle timeout in nanoseconds, or 0 if none
+     */
+    public static Session register(
+        Object owner,
+        String sessionID,
+        List<ExtensionLoader> extensionLoaders,
+        long idleTimeout
+    ) {
+        var session = new Session(sessionID, extensionLoaders);
+        liveSessions.put(sessionID, session);
+        reportLiveSessions();
+        // the cleaning action must not reference the owner
+        session.cleanable = cleaner.register(owner, session::collect);
+        session.idleTimeout(idleTimeout);
+        return session;
+    }
+
+
+    /** @return The number of sessions neither closed nor collected yet */
+    public static long liveSessions() {
+        return liveSessions.size();
+    }
+
+
+    /** @return The number of sessions closed explicitly */
+    public static long closedSessions() {
+        return closedSessions.get();
+    }
+
+
+    /** @return The number of sessions released because their owner became unreachable */
+    public static long collectedSessions() {
+        return collectedSessions.get();
+    }
+
+
+    /** @return The number of times an idle session has been released */
+    public static long expiredSessions() {
+        return expiredSessions.get();
+    }
+
+
+    private static void reportLiveSessions() {
+        if (Metrics.enabled()) {
+            Metrics.reporter().liveSessions(liveSessions.size());
+        }
+    }
+
+
+    private static synchronized void ensureSweeping(long idleTimeout) {
+        long period = Math.max(MIN_SWEEP_PERIOD, Math.min(MAX_SWEEP_PERIOD, idleTimeout / 2));
+        if (period >= sweepPeriod) {
+            return;
+        }
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "jext-session-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (sweep != null) {
+            sweep.cancel(false);
+        }
+        sweepPeriod = period;
+        sweep = sweeper.scheduleAtFixedRate(Sessions::sweep, period, period, TimeUnit.NANOSECONDS);
+    }
+
+
+    private static void sweep() {
+        long now = System.nanoTime();
+        for (Session session : liveSessions.values()) {
+            try {
+                session.expireIfIdle(now);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error releasing idle session {}", session.sessionID, e);
+            }
+        }
+    }
+
+
+    /**
+     * The state of a session that is required to release it, independent of
+     * the extension manager that owns it
+     */
+    public static final class Session {
+
+        private final String sessionID;
+        private final List<ExtensionLoader> extensionLoaders;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final AtomicLong releasedInstances = new AtomicLong();
+        private Cleaner.Cleanable cleanable;
+        private volatile long idleTimeout;
+        private volatile long lastAccess = System.nanoTime();
+        private volatile boolean expired;
+
+
+        private Session(String sessionID, List<ExtensionLoader> extensionLoaders) {
+            this.sessionID = sessionID;
+            this.extensionLoaders = extensionLoaders;
+        }
+
+
+        /**
+         * Set the idle timeout of the session
+         * @param idleTimeout The idle timeout in nanoseconds, or 0 if none
+         */
+        public void idleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            if (idleTimeout > 0) {
+                ensureSweeping(idleTimeout);
+            }
+        }
+
+
+        /** @return The idle timeout in nanoseconds, or 0 if none */
+        public long idleTimeout() {
+            return idleTimeout;
+        }
+
+
+        /**
+         * Record that the session is being used. It has no cost unless the
+         * session has an idle timeout.
+         */
+        public void touch() {
+            if (idleTimeout > 0) {
+                lastAccess = System.nanoTime();
+                if (expired) {
+                    expired = false;
+                }
+            }
+        }
+
+
+        /**
+         * Release the session instances, keeping the session usable
+         */
+        public void releaseInstances() {
+            releasedInstances.incrementAndGet();
+            for (ExtensionLoader extensionLoader : extensionLoaders) {
+                extensionLoader.invalidateSession(sessionID);
+            }
+        }
+
+
+        /**
+         * @return How many times the session instances have been released
+         */
+        public long releasedInstances() {
+            return releasedInstances.get();
+        }
+
+
+        /**
+         * Release the session definitively
+         */
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                closedSessions.incrementAndGet();
+            }
+            // it also releases the instances if it has not been done yet
+            cleanable.clean();
+        }
+
+
+        private void collect() {
+            if (released.compareAndSet(false, true)) {
+                collectedSessions.incrementAndGet();
+            }
+            releaseInstances();
+            liveSessions.remove(sessionID);
+            reportLiveSessions();
+        }
+
+
+        private void expireIfIdle(long now) {
+            long timeout = idleTimeout;
+            if (timeout > 0 && !expired && now - lastAccess > timeout) {
+                expired = true;
+                releaseInstances();
+                expiredSessions.incrementAndGet();
+                LOGGER.debug("Released session {} after being idle for {}", sessionID, Duration.ofNanos(timeout));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+
+/**
+ * The instances of a {@link jext.ExtensionScope#THREAD} extension within a
+ * session, one per thread.
+ * <p>
+ * Each instance is leased to the thread that requested it. Once that thread
+ * terminates, the instance is leased to the next thread that requests the
+ * extension instead of creating a new one, so no more instances are created
+ * than threads were using them at the same time:
+ * <ul>
+ *   <li>platform threads are usually few and long-lived (for instance, the
+ *   workers of a thread pool), so every lease is inspected when a new
+ *   platform thread requests the extension</li>
+ *   <li>virtual threads may be millions, each one short-lived, so only a few
+ *   leases (the oldest ones) are inspected when a new virtual thread
+ *   requests the extension</li>
+ * </ul>
+ */
+final class ThreadInstances {
+
+    /* The number of leases inspected when a new virtual thread requests an instance */
+    private static final int MAX_RECLAIM_ATTEMPTS = 8;
+
+    private final Supplier<?> instantiator;
+    private final ThreadLocal<Lease> current = new ThreadLocal<>();
+    private final Queue<Lease> platformLeases = new ConcurrentLinkedQueue<>();
+    private final Queue<Lease> virtualLeases = new ConcurrentLinkedQueue<>();
+    private volatile boolean released;
+
+
+    ThreadInstances(Supplier<?> instantiator) {
+        this.instantiator = instantiator;
+    }
+
+
+    /**
+     * @return The instance leased to the current thread, or <code>null</code>
+     * if it cannot be created
+     */
+    Object get() {
+        Lease lease = current.get();
+        if (lease != null) {
+            Object instance = lease.instance;
+            if (instance != null) {
+                return instance;
+            }
+        }
+        Thread thread = Thread.currentThread();
+        boolean virtual = VirtualThreads.isVirtual(thread);
+        lease = virtual ? reclaimVirtual(thread) : reclaimPlatform(thread);
+        if (lease == null) {
+            Object instance = instantiator.get();
+            if (instance == null) {
+                return null;
+            }
+            lease = new Lease(thread, instance);
+            (virtual ? virtualLeases : platformLeases).offer(lease);
+        }
+        current.set(lease);
+        Object instance = lease.instance;
+        if (released) {
+            // released meanwhile, the instance must not be kept
+            lease.instance = null;
+        }
+        return instance;
+    }
+
+
+    /**
+     * Discard every instance, even those leased to threads still alive
+     */
+    void release() {
+        released = true;
+        releaseAll(platformLeases);
+        releaseAll(virtualLeases);
+    }
+
+
+    private Lease reclaimPlatform(Thread thread) {
+        for (Lease lease : platformLeases) {
+            if (lease.claim(thread)) {
+                return lease;
+            }
+        }
+        return null;
+    }
+
+
+    private Lease reclaimVirtual(Thread thread) {
+        for (int i = 0; i < MAX_RECLAIM_ATTEMPTS; i++) {
+            Lease lease = virtualLeases.poll();
+            if (lease == null) {
+                return null;
+            }
+            // the lease goes to the tail, whether it is reclaimed or not
+            virtualLeases.offer(lease);
+            if (lease.claim(thread)) {
+                return lease;
+            }
+        }
+        return null;
+    }
+
+
+    private static void releaseAll(Queue<Lease> leases) {
+        Lease lease;
+        while ((lease = leases.poll()) != null) {
+            lease.instance = null;
+        }
+    }
+
+
+    private static final class Lease {
+
+        private Thread owner;
+        private volatile Object instance;
+
+        private Lease(Thread owner, Object instance) {
+            this.owner = owner;
+            this.instance = instance;
+        }
+
+        /* Take the lease if its owner has terminated */
+        private synchronized boolean claim(Thread thread) {
+            if (owner.isAlive() || instance == null) {
+                return false;
+            }
+            owner = thread;
+            return true;
+        }
+    }
+
+}
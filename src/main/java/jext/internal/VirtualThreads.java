@@ -0,0 +1,116 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext.internal;
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Access to virtual threads, when the running platform supports them. The
+ * library is compiled for Java 11, so they are looked up reflectively.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle startVirtualThread = lookup();
+    private static final MethodHandle isVirtual = startVirtualThread == null ? null : lookupIsVirtual();
+    private static final Executor executor = startVirtualThread == null ?
+        null :
+        VirtualThreads::start;
+
+
+    private VirtualThreads() {
+        // avoid instantiation
+    }
+
+
+    /**
+     * @return Whether the running platform supports virtual threads
+     */
+    public static boolean available() {
+        return startVirtualThread != null;
+    }
+
+
+    /**
+     * @return An executor that runs each task in a new virtual thread, or
+     * <code>null</code> if virtual threads are not available
+     */
+    public static Executor executor() {
+        return executor;
+    }
+
+
+    /**
+     * @return Whether the given thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (isVirtual == null) {
+            return false;
+        }
+        try {
+            return (boolean) isVirtual.invokeExact(thread);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static void start(Runnable task) {
+        try {
+            startVirtualThread.invoke(task);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static MethodHandle lookup() {
+        MethodHandle method;
+        try {
+            method = MethodHandles.publicLookup().findStatic(
+                Thread.class,
+                "startVirtualThread",
+                MethodType.methodType(Thread.class, Runnable.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+        // in JDK 19 and 20 virtual threads are a preview feature, and the
+        // method exists but fails unless preview features are enabled
+        try {
+            Runnable noOp = () -> { };
+            ((Thread) method.invoke(noOp)).join();
+            return method;
+        } catch (UnsupportedOperationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return method;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+
+    private static MethodHandle lookupIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(
+                Thread.class,
+                "isVirtual",
+                MethodType.methodType(boolean.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ module jext {
 
     uses javax.annotation.processing.Processor;
     uses jext.ExtensionLoader;
+    uses jext.ExtensionMetrics;
 
     provides javax.annotation.processing.Processor with jext.ExtensionProcessor;
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Extension(
+    provider = "test",
+    name = "counted",
+    version = "1.0.0",
+    scope = ExtensionScope.LOCAL
+)
+public class CountedExtension implements CountedExtensionPoint {
+
+    static final AtomicInteger instances = new AtomicInteger();
+    static volatile String creator;
+
+    public CountedExtension() {
+        instances.incrementAndGet();
+        creator = StackWalker.getInstance()
+            .walk(frames -> frames.skip(1).findFirst())
+            .map(StackWalker.StackFrame::getClassName)
+            .orElse(null);
+    }
+
+}
@@ -0,0 +1,28 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Extension(
+    provider = "test",
+    name = "english",
+    version = "1.0.0",
+    priority = 2,
+    scope = ExtensionScope.LOCAL
+)
+public class GreetingEnglishExtension implements GreetingExtensionPoint {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public GreetingEnglishExtension() {
+        instances.incrementAndGet();
+    }
+
+    @Override
+    public String greet() {
+        return "Hello";
+    }
+
+}
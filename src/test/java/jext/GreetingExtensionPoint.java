@@ -0,0 +1,11 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+@ExtensionPoint
+public interface GreetingExtensionPoint {
+
+    String greet();
+
+}
@@ -0,0 +1,28 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Extension(
+    provider = "test",
+    name = "spanish",
+    version = "1.0.0",
+    priority = 1,
+    scope = ExtensionScope.LOCAL
+)
+public class GreetingSpanishExtension implements GreetingExtensionPoint {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public GreetingSpanishExtension() {
+        instances.incrementAndGet();
+    }
+
+    @Override
+    public String greet() {
+        return "Hola";
+    }
+
+}
@@ -0,0 +1,13 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+@Extension(provider = "test", name = "a", version = "1.0", priority = 1)
+public class IndexedExtensionA implements IndexedExtensionPoint {
+
+    static {
+        INITIALIZED.add("a");
+    }
+
+}
@@ -0,0 +1,13 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+@Extension(provider = "test", name = "b", version = "1.0", priority = 2)
+public class IndexedExtensionB implements IndexedExtensionPoint {
+
+    static {
+        INITIALIZED.add("b");
+    }
+
+}
@@ -0,0 +1,15 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@ExtensionPoint
+public interface IndexedExtensionPoint {
+
+    /** Names of the extension classes that have been initialized */
+    Set<String> INITIALIZED = ConcurrentHashMap.newKeySet();
+
+}
@@ -0,0 +1,42 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jext.internal.Metrics;
+
+/**
+ * Scenarios run by TestMetrics within an isolated class loader, returning
+ * the metrics recorded meanwhile
+ */
+public class MetricsScenarios {
+
+    public static boolean metricsEnabled() {
+        return Metrics.enabled();
+    }
+
+
+    public static List<String> lookupTwice() {
+        RecordingMetrics.events.clear();
+        var manager = MockExternalLoader.managerWithoutExternalLoaders(
+            Thread.currentThread().getContextClassLoader()
+        );
+        manager.getExtension(CountedExtensionPoint.class);
+        manager.getExtension(CountedExtensionPoint.class);
+        manager.close();
+        return new ArrayList<>(RecordingMetrics.events);
+    }
+
+
+    public static List<String> useExternalLoaders() {
+        RecordingMetrics.events.clear();
+        var manager = new ExtensionManager();
+        manager.getExtensions(MyExtensionPoint.class).count();
+        manager.close();
+        return new ArrayList<>(RecordingMetrics.events);
+    }
+
+}
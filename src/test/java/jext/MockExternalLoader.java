@@ -2,21 +2,50 @@ package jext;
 
 import jext.internal.InternalExtensionLoader;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.*;
 import java.util.stream.*;
 
 public class MockExternalLoader implements ExtensionLoader {
 
+    /**
+     * Create an extension manager that does not use any external loader,
+     * not even this one
+     */
+    static ExtensionManager managerWithoutExternalLoaders(ClassLoader... classLoaders) {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new ClassLoader(contextClassLoader) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return name.endsWith(ExtensionLoader.class.getName()) ?
+                    Collections.emptyEnumeration() :
+                    super.getResources(name);
+            }
+        });
+        try {
+            return new ExtensionManager(classLoaders);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+
     @Override
     public <T> List<T> load(Class<T> type, List<ClassLoader> classLoaders, String sessionID) {
         return classLoaders.stream().flatMap(classLoader -> {
             try {
-                return ServiceLoader.load(type, classLoader).stream().map(ServiceLoader.Provider::get);
+                return ServiceLoader.load(type, classLoader).stream();
             } catch (RuntimeException e) {
                 return Stream.empty();
             }
         })
-       .filter(extension -> extension.getClass().getAnnotation(Extension.class).externallyManaged())
+       .filter(provider -> {
+            Extension metadata = provider.type().getAnnotation(Extension.class);
+            return metadata != null && metadata.externallyManaged();
+        })
+       .map(ServiceLoader.Provider::get)
        .collect(Collectors.toList());
     }
 
@@ -0,0 +1,100 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Builds plugins at runtime, providing extensions of {@link MyExtensionPoint}
+ * from the provider <tt>plugin</tt>
+ */
+final class Plugins {
+
+    private Plugins() {
+    }
+
+
+    /**
+     * Compile the extension <tt>plugin.[className]</tt> into the given folder,
+     * declaring it as a service
+     */
+    static void compile(Path folder, String className, String name, ExtensionScope scope)
+    throws IOException {
+        compile(folder, className, name, scope, false);
+    }
+
+
+    /**
+     * Compile the extension <tt>plugin.[className]</tt> into the given folder.
+     * If <tt>indexed</tt>, the annotation processor is used, generating the
+     * extension index and the service declaration (only one extension can be
+     * compiled this way into the same folder)
+     */
+    static void compile(Path folder, String className, String name, ExtensionScope scope, boolean indexed)
+    throws IOException {
+        Path source = folder.resolve("plugin/" + className + ".java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source,
+            "package plugin;\n" +
+            "@jext.Extension(provider = \"plugin\", name = \"" + name + "\", version = \"1.0\", " +
+            "scope = jext.ExtensionScope." + scope + ")\n" +
+            "public class " + className + " implements jext.MyExtensionPoint { }\n"
+        );
+        String classPath = System.getProperty("java.class.path");
+        List<String> options = indexed ?
+            List.of("-processor", ExtensionProcessor.class.getName(), "-processorpath", classPath) :
+            List.of("-proc:none");
+        List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(List.of("-cp", classPath, "-d", folder.toString(), source.toString()));
+        int result = ToolProvider.getSystemJavaCompiler().run(
+            null, null, null, arguments.toArray(new String[0])
+        );
+        assertThat(result).isZero();
+        Files.delete(source);
+        if (indexed) {
+            return;
+        }
+        Path services = folder.resolve("META-INF/services/" + MyExtensionPoint.class.getName());
+        Files.createDirectories(services.getParent());
+        Files.writeString(
+            services,
+            "plugin." + className + "\n",
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND
+        );
+    }
+
+
+    /**
+     * Package the content of the given folder as a jar
+     */
+    static Path jar(Path folder, Path jar) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        try (var output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Path file : files) {
+                output.putNextEntry(new JarEntry(folder.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, (OutputStream) output);
+                output.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+}
@@ -0,0 +1,22 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Extension(
+    provider = "test",
+    name = "pooled",
+    version = "1.0.0",
+    scope = ExtensionScope.POOLED
+)
+public class PooledExtension implements PooledExtensionPoint {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public PooledExtension() {
+        instances.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,9 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+@ExtensionPoint
+public interface PooledExtensionPoint {
+
+}
@@ -0,0 +1,46 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Only registered within the isolated class loader used by TestMetrics
+ */
+public class RecordingMetrics implements ExtensionMetrics {
+
+    static final Queue<String> events = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void lookup(Class<?> extensionPoint, long nanos) {
+        events.add("lookup " + extensionPoint.getSimpleName());
+    }
+
+    @Override
+    public void scan(Class<?> extensionPoint, ClassLoader classLoader, long nanos) {
+        events.add("scan " + extensionPoint.getSimpleName());
+    }
+
+    @Override
+    public void resolution(Class<?> extensionPoint, boolean cached) {
+        events.add((cached ? "hit " : "miss ") + extensionPoint.getSimpleName());
+    }
+
+    @Override
+    public void instantiation(Class<?> extensionClass, long nanos) {
+        events.add("instantiation " + extensionClass.getSimpleName());
+    }
+
+    @Override
+    public void externalLoad(ExtensionLoader extensionLoader, Class<?> extensionPoint, long nanos) {
+        events.add("external " + extensionLoader.getClass().getSimpleName() + " " + extensionPoint.getSimpleName());
+    }
+
+    @Override
+    public void liveSessions(long liveSessions) {
+        events.add("sessions");
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+public class TestBroadcast {
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+    private ExecutorService executor;
+
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void testResultsAreInPriorityOrderRegardlessCompletionOrder() {
+        var results = extensionManager.broadcast(
+            MyExtensionPointV2_5.class,
+            extension -> {
+                if (extension instanceof MyExtensionV2_5) {
+                    sleep(200);
+                }
+                return extension.value();
+            },
+            executor,
+            BroadcastPolicy.FAIL_FAST
+        );
+        assertThat(results).containsExactly("MyExtensionV2_5", "MyExtensionV2_6");
+    }
+
+
+    @Test
+    public void testExtensionsAreInvokedConcurrently() {
+        var latch = new CountDownLatch(2);
+        var results = extensionManager.broadcast(
+            MyExtensionPointV2_5.class,
+            extension -> {
+                latch.countDown();
+                // would time out if the invocations were sequential
+                return await(latch);
+            }
+        );
+        assertThat(results).containsExactly(true, true);
+    }
+
+
+    @Test
+    public void testErrorsAreCollectedAlongWithResults() {
+        var error = catchThrowableOfType(
+            () -> extensionManager.broadcast(
+                MyExtensionPointV2_5.class,
+                extension -> {
+                    if (extension instanceof MyExtensionV2_5) {
+                        throw new IllegalStateException("failed");
+                    }
+                    return extension.value();
+                },
+                executor,
+                BroadcastPolicy.COLLECT_ERRORS
+            ),
+            BroadcastException.class
+        );
+        assertThat(error).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(error.errors()).hasSize(1);
+        assertThat(error.results()).containsExactly("MyExtensionV2_6");
+    }
+
+
+    @Test
+    public void testFailFastDoesNotWaitForPendingInvocations() {
+        var release = new CountDownLatch(1);
+        long start = System.nanoTime();
+        try {
+            assertThatExceptionOfType(BroadcastException.class).isThrownBy(
+                () -> extensionManager.broadcast(
+                    MyExtensionPointV2_5.class,
+                    extension -> {
+                        if (extension instanceof MyExtensionV2_5) {
+                            throw new IllegalStateException("failed");
+                        }
+                        return await(release);
+                    },
+                    executor,
+                    BroadcastPolicy.FAIL_FAST
+                )
+            ).withCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+    }
+
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestClassUnloading {
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path pluginFolder;
+
+
+    @BeforeClass
+    public static void compilePlugin() throws IOException {
+        pluginFolder = folder.newFolder("plugin").toPath();
+        Plugins.compile(pluginFolder, "PluginExtension", "plugin", ExtensionScope.GLOBAL);
+        Plugins.compile(pluginFolder, "PluginSessionExtension", "plugin-session", ExtensionScope.SESSION);
+    }
+
+
+    @Test
+    public void testReleasedClassLoaderGetNewGlobalInstances() throws IOException {
+        try (var classLoader = newPluginClassLoader()) {
+            var extensionManager = new ExtensionManager(classLoader);
+            var instance = pluginExtension(extensionManager, "plugin");
+            assertThat(pluginExtension(extensionManager, "plugin")).isSameAs(instance);
+            extensionManager.release(classLoader);
+            assertThat(pluginExtension(extensionManager, "plugin")).isNotSameAs(instance);
+        }
+    }
+
+
+    @Test
+    public void testDiscardedClassLoaderIsGarbageCollected() throws Exception {
+        WeakReference<ClassLoader> classLoader = usePluginAndDiscard();
+        for (int i = 0; i < 100 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(classLoader.get()).isNull();
+    }
+
+
+    private static WeakReference<ClassLoader> usePluginAndDiscard() throws IOException {
+        try (var classLoader = newPluginClassLoader()) {
+            var extensionManager = new ExtensionManager(classLoader);
+            var global = pluginExtension(extensionManager, "plugin");
+            var session = pluginExtension(extensionManager, "plugin-session");
+            assertThat(global.getClass().getClassLoader()).isSameAs(classLoader);
+            assertThat(extensionManager.getExtensionMetadata(session).scope())
+                .isEqualTo(ExtensionScope.SESSION);
+            // neither the manager is cleared nor the class loader released
+            return new WeakReference<>(classLoader);
+        }
+    }
+
+
+    private static URLClassLoader newPluginClassLoader() throws IOException {
+        return new URLClassLoader(
+            new URL[] { pluginFolder.toUri().toURL() },
+            TestClassUnloading.class.getClassLoader()
+        );
+    }
+
+
+    private static MyExtensionPoint pluginExtension(ExtensionManager extensionManager, String name) {
+        return extensionManager.getExtensionThatSatisfyMetadata(
+            MyExtensionPoint.class,
+            metadata -> metadata.provider().equals("plugin") && metadata.name().equals(name)
+        ).orElseThrow();
+    }
+
+}
@@ -5,6 +5,7 @@ import com.google.testing.compile.Compiler;
 import org.junit.Test;
 
 import java.io.IOException;
+import javax.tools.JavaFileObject;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,11 +24,68 @@ public class TestCompilation {
         System.out.println(compilation.status());
         System.out.println(compilation.diagnostics().stream().map(Object::toString).collect(Collectors.joining("\n")));
         assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
-        assertThat(compilation.generatedFiles()).hasSize(3);
+        assertThat(compilation.generatedFiles()).hasSize(6);
 
-        var generated = compilation.generatedFiles().get(0);
-        assertThat(generated.toUri()).hasPath("/CLASS_OUTPUT/META-INF/services/jext.CompilableExtensionPoint");
+        var generated = generatedFile(compilation, "/CLASS_OUTPUT/META-INF/services/jext.CompilableExtensionPoint");
         assertThat(generated.getCharContent(true)).isEqualTo("jext.CompilableExtension\n");
 
+        var index = generatedFile(compilation, "/CLASS_OUTPUT/META-INF/jext/index");
+        assertThat(index.getCharContent(true).toString().split("\n"))
+            .containsExactly(
+                "# jext extension index v1",
+                String.join("\t",
+                    "jext.CompilableExtensionPoint", "1.0",
+                    "jext.CompilableExtension", "jext.CompilableExtension",
+                    "test", "compilable", "1.0", "", "1.0",
+                    "false", "GLOBAL", "5", "true", "",
+                    "jext.CompilableExtension_JextFactory"
+                )
+            );
+
+        var factory = generatedFile(compilation, "/SOURCE_OUTPUT/jext/CompilableExtension_JextFactory.java");
+        assertThat(factory.getCharContent(true).toString())
+            .contains("implements java.util.function.Supplier<Object>")
+            .contains("return new jext.CompilableExtension();");
+    }
+
+
+    @Test
+    public void testNoFactoryIsGeneratedForConstructorsThrowingCheckedExceptions() throws IOException {
+        Compilation compilation =
+            Compiler.javac()
+                .withProcessors(new ExtensionProcessor())
+                .compile(
+                    JavaFileObjects.forResource("CompilableExtensionPoint.java"),
+                    JavaFileObjects.forSourceLines("jext.ThrowingExtension",
+                        "package jext;",
+                        "@Extension(provider = \"test\", name = \"throwing\", version = \"1.0\")",
+                        "public class ThrowingExtension implements CompilableExtensionPoint {",
+                        "    public ThrowingExtension() throws java.io.IOException { }",
+                        "}"
+                    ),
+                    JavaFileObjects.forSourceLines("jext.UncheckedThrowingExtension",
+                        "package jext;",
+                        "@Extension(provider = \"test\", name = \"unchecked\", version = \"1.0\")",
+                        "public class UncheckedThrowingExtension implements CompilableExtensionPoint {",
+                        "    public UncheckedThrowingExtension() throws IllegalStateException { }",
+                        "}"
+                    )
+                );
+        assertThat(compilation.status()).isEqualTo(Compilation.Status.SUCCESS);
+        assertThat(compilation.generatedFiles())
+            .noneMatch(file -> file.toUri().getPath().endsWith("/ThrowingExtension_JextFactory.java"))
+            .anyMatch(file -> file.toUri().getPath().endsWith("/UncheckedThrowingExtension_JextFactory.java"));
+
+        var index = generatedFile(compilation, "/CLASS_OUTPUT/META-INF/jext/index");
+        assertThat(index.getCharContent(true).toString().split("\n"))
+            .anyMatch(line -> line.contains("\tjext.ThrowingExtension\t") && line.endsWith("\t"));
+    }
+
+
+    private JavaFileObject generatedFile(Compilation compilation, String path) {
+        return compilation.generatedFiles().stream()
+            .filter(file -> file.toUri().getPath().equals(path))
+            .findFirst()
+            .orElseThrow();
     }
 }
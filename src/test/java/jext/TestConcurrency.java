@@ -0,0 +1,177 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.Test;
+
+import jext.internal.ExtensionDescriptor;
+import jext.internal.ExtensionIndex;
+import jext.internal.ExtensionRegistry;
+import jext.internal.InternalExtensionLoader;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestConcurrency {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 500;
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+
+
+    @Test
+    public void testResolutionCompletedAfterInvalidationIsDiscarded() throws Exception {
+        var scans = new AtomicInteger();
+        var blockNextScan = new AtomicBoolean();
+        var scanStarted = new CountDownLatch(1);
+        var scanReleased = new CountDownLatch(1);
+        var registry = new ExtensionRegistry(
+            List.of(Thread.currentThread().getContextClassLoader()),
+            new InternalExtensionLoader() {
+                @Override
+                public <T> Map<Object, ExtensionDescriptor> scan(
+                    Class<T> type,
+                    ClassLoader classLoader,
+                    ExtensionIndex index
+                ) {
+                    if (type == MyExtensionPointV2_5.class) {
+                        scans.incrementAndGet();
+                        if (blockNextScan.compareAndSet(true, false)) {
+                            scanStarted.countDown();
+                            awaitQuietly(scanReleased);
+                        }
+                    }
+                    return super.scan(type, classLoader, index);
+                }
+            }
+        );
+        var otherExtensionPoint = registry.resolve(MyExtensionPoint.class);
+        ExtensionRegistry.Snapshot inProgress = registry.snapshot();
+        registry.invalidate(MyExtensionPointV2_5.class);
+        // a resolution started before the invalidation is completed afterwards
+        var stale = inProgress.resolve(MyExtensionPointV2_5.class);
+        assertThat(registry.resolve(MyExtensionPointV2_5.class)).isNotSameAs(stale);
+        assertThat(registry.resolve(MyExtensionPoint.class)).isSameAs(otherExtensionPoint);
+
+        // a scan started before the invalidation is completed afterwards
+        registry.invalidate(MyExtensionPointV2_5.class);
+        blockNextScan.set(true);
+        var inFlight = CompletableFuture.supplyAsync(() -> registry.resolve(MyExtensionPointV2_5.class));
+        assertThat(scanStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            // the invalidation does not wait for the scan either
+            CompletableFuture.runAsync(registry::invalidateAll).get(10, TimeUnit.SECONDS);
+        } finally {
+            scanReleased.countDown();
+        }
+        var staleScan = inFlight.get(10, TimeUnit.SECONDS);
+        int scansBefore = scans.get();
+        assertThat(registry.resolve(MyExtensionPointV2_5.class)).isNotSameAs(staleScan);
+        assertThat(scans.get()).isGreaterThan(scansBefore);
+    }
+
+
+    @Test
+    public void testSharedManagerCanBeUsedConcurrently() throws Exception {
+        var expected = Map.of(
+            MyExtensionPoint.class, classesOf(new ExtensionManager(), MyExtensionPoint.class),
+            MyExtensionPointV2_5.class, classesOf(new ExtensionManager(), MyExtensionPointV2_5.class)
+        );
+        assertThat(expected.get(MyExtensionPoint.class)).contains(ExternallyManagedExtension.class);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                boolean invalidating = thread == 0;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        if (invalidating && i % 50 == 0) {
+                            extensionManager.invalidateAll();
+                        }
+                        for (var extensionPoint : expected.keySet()) {
+                            assertThat(classesOf(extensionManager, extensionPoint))
+                                .containsExactlyElementsOf(expected.get(extensionPoint));
+                            assertThat(extensionManager.getExtensionMetadata(extensionPoint))
+                                .hasSameSizeAs(expected.get(extensionPoint));
+                        }
+                        extensionManager.getExtension(MyExtensionPoint.class)
+                            .map(extensionManager::getExtensionMetadata)
+                            .orElseThrow();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                // any assertion error or ConcurrentModificationException would be rethrown here
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void testConcurrentAsyncRequestsShareTheResolution() throws Exception {
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        Executor executor = tasks::add;
+        var first = extensionManager.getExtensionAsync(MyExtensionPointV2_5.class, executor);
+        var second = extensionManager.getExtensionAsync(MyExtensionPointV2_5.class, executor);
+        var all = extensionManager.getExtensionsAsync(MyExtensionPointV2_5.class, executor);
+        // nothing is done in the invoking thread, and the resolution is shared
+        assertThat(tasks).hasSize(1);
+        assertThat(first).isNotDone();
+        int executedTasks = 0;
+        for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+            task.run();
+            executedTasks++;
+        }
+        assertThat(executedTasks).isEqualTo(4);
+        assertThat(first.get()).containsInstanceOf(MyExtensionV2_5.class);
+        assertThat(second.get()).containsInstanceOf(MyExtensionV2_5.class);
+        assertThat(all.get()).extracting(Object::getClass)
+            .containsExactly(MyExtensionV2_5.class, MyExtensionV2_6.class);
+        // once resolved, only the instantiation is performed asynchronously
+        var next = extensionManager.getExtensionAsync(MyExtensionPointV2_5.class, executor);
+        assertThat(tasks).hasSize(1);
+        tasks.poll().run();
+        assertThat(next.get()).containsInstanceOf(MyExtensionV2_5.class);
+    }
+
+
+    @Test
+    public void testAsyncRequestsUseTheCommonPoolByDefault() throws Exception {
+        assertThat(extensionManager.getExtensionAsync(MyExtensionPoint.class).get(1, TimeUnit.MINUTES))
+            .isPresent();
+    }
+
+
+    private static List<Class<?>> classesOf(ExtensionManager manager, Class<?> extensionPoint) {
+        return manager.getExtensions(extensionPoint)
+            .map(Object::getClass)
+            .collect(Collectors.toList());
+    }
+
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
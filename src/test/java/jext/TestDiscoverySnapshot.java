@@ -0,0 +1,106 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestDiscoverySnapshot {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path pluginFolder;
+    private Path snapshot;
+
+
+    @Before
+    public void compilePlugin() throws IOException {
+        pluginFolder = folder.newFolder("plugin").toPath();
+        Plugins.compile(pluginFolder, "SnapshotExtension", "snapshot", ExtensionScope.LOCAL);
+        snapshot = folder.getRoot().toPath().resolve("extensions.snapshot");
+    }
+
+
+    @Test
+    public void testRestoredSnapshotAvoidsDiscovery() throws IOException {
+        List<String> expected;
+        // the mock external loader would load the plugin classes
+        try (var classLoader = new PluginClassLoader(pluginFolder)) {
+            var extensionManager = MockExternalLoader.managerWithoutExternalLoaders(classLoader);
+            expected = extensionNames(extensionManager);
+            // plugin classes are not indexed, so they are loaded when discovered
+            assertThat(classLoader.isLoaded("plugin.SnapshotExtension")).isTrue();
+            extensionManager.storeDiscoverySnapshot(snapshot);
+        }
+        assertThat(expected).contains("snapshot");
+        try (var classLoader = new PluginClassLoader(pluginFolder)) {
+            var extensionManager = MockExternalLoader.managerWithoutExternalLoaders(classLoader)
+                .withDiscoverySnapshot(snapshot);
+            assertThat(extensionNames(extensionManager)).containsExactlyElementsOf(expected);
+            assertThat(classLoader.isLoaded("plugin.SnapshotExtension")).isFalse();
+            assertThat(extensionManager.getExtensionThatSatisfyMetadata(
+                MyExtensionPoint.class,
+                metadata -> metadata.name().equals("snapshot")
+            )).get().extracting(Object::getClass).extracting(Class::getName)
+                .isEqualTo("plugin.SnapshotExtension");
+        }
+    }
+
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws IOException {
+        try (var classLoader = new PluginClassLoader(pluginFolder)) {
+            var extensionManager = new ExtensionManager(classLoader);
+            extensionNames(extensionManager);
+            extensionManager.storeDiscoverySnapshot(snapshot);
+        }
+        Plugins.compile(pluginFolder, "NewExtension", "new", ExtensionScope.LOCAL);
+        try (var classLoader = new PluginClassLoader(pluginFolder)) {
+            var extensionManager = new ExtensionManager(classLoader).withDiscoverySnapshot(snapshot);
+            assertThat(extensionNames(extensionManager)).contains("snapshot", "new");
+        }
+    }
+
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        Files.write(snapshot, new byte[] { 1, 2, 3 });
+        try (var classLoader = new PluginClassLoader(pluginFolder)) {
+            var extensionManager = new ExtensionManager(classLoader).withDiscoverySnapshot(snapshot);
+            assertThat(extensionNames(extensionManager)).contains("snapshot");
+        }
+    }
+
+
+    private static List<String> extensionNames(ExtensionManager extensionManager) {
+        return extensionManager.getExtensionMetadata(MyExtensionPoint.class)
+            .map(Extension::name)
+            .collect(Collectors.toList());
+    }
+
+
+    private static class PluginClassLoader extends URLClassLoader {
+
+        private PluginClassLoader(Path folder) throws IOException {
+            super(new URL[] { folder.toUri().toURL() }, TestDiscoverySnapshot.class.getClassLoader());
+        }
+
+        private boolean isLoaded(String className) {
+            return findLoadedClass(className) != null;
+        }
+    }
+
+}
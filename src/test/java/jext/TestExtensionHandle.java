@@ -0,0 +1,76 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestExtensionHandle {
+
+    private final ExtensionManager extensionManager = MockExternalLoader.managerWithoutExternalLoaders(
+        Thread.currentThread().getContextClassLoader()
+    );
+
+
+    @Test
+    public void testHandleOfGlobalExtensionReturnsTheSameInstance() {
+        var handle = extensionManager.getExtensionHandle(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().name("global")
+        );
+        var instance = handle.get();
+        assertThat(instance).containsInstanceOf(MyExtensionGlobal.class);
+        assertThat(handle.get()).isSameAs(instance);
+        assertThat(handle.get()).isEqualTo(extensionManager.getExtension(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().name("global")
+        ));
+    }
+
+
+    @Test
+    public void testHandleOfLocalExtensionReturnsNewInstances() {
+        var handle = extensionManager.getExtensionHandle(CountedExtensionPoint.class);
+        int before = CountedExtension.instances.get();
+        var first = handle.get().orElseThrow();
+        var second = handle.get().orElseThrow();
+        assertThat(second).isNotSameAs(first);
+        assertThat(CountedExtension.instances.get() - before).isEqualTo(2);
+    }
+
+
+    @Test
+    public void testHandleIsUpdatedWhenExtensionsChange() {
+        var handle = extensionManager.getExtensionHandle(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().name("session")
+        );
+        var instance = handle.get().orElseThrow();
+        assertThat(handle.get()).containsSame(instance);
+        extensionManager.clear();
+        assertThat(handle.get()).get().isNotSameAs(instance);
+    }
+
+
+    @Test
+    public void testListHandleReturnsExtensionsInPriorityOrder() {
+        var handle = extensionManager.getExtensionListHandle(MyExtensionPointV2_5.class);
+        assertThat(handle.get()).extracting(Object::getClass)
+            .containsExactly(MyExtensionV2_5.class, MyExtensionV2_6.class);
+        assertThat(handle.get()).isSameAs(handle.get());
+        var local = extensionManager.getExtensionListHandle(MyExtensionPoint.class);
+        assertThat(local.get()).extracting(Object::getClass).containsExactlyElementsOf(
+            extensionManager.getExtensions(MyExtensionPoint.class)
+                .map(Object::getClass)
+                .collect(Collectors.toList())
+        );
+        assertThat(local.get()).isNotSameAs(local.get());
+    }
+
+}
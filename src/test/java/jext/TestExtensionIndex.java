@@ -0,0 +1,77 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jext.internal.ExtensionIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestExtensionIndex {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+
+
+    @Test
+    public void testMetadataIsAvailableWithoutInitializingExtensions() {
+        assertThat(extensionManager.getExtensionMetadata(IndexedExtensionPoint.class))
+            .extracting(Extension::name)
+            .containsExactly("a", "b");
+        assertThat(IndexedExtensionPoint.INITIALIZED).doesNotContain("b");
+    }
+
+
+    @Test
+    public void testIndexedMetadataIsEqualToAnnotation() {
+        assertThat(extensionManager.getExtensionMetadata(IndexedExtensionPoint.class).findFirst())
+            .contains(IndexedExtensionA.class.getAnnotation(Extension.class));
+    }
+
+
+    @Test
+    public void testNotSelectedExtensionsAreNotInitialized() {
+        var extension = extensionManager.getExtensionThatSatisfyMetadata(
+            IndexedExtensionPoint.class,
+            metadata -> metadata.name().equals("a")
+        );
+        assertThat(extension).containsInstanceOf(IndexedExtensionA.class);
+        assertThat(IndexedExtensionPoint.INITIALIZED).contains("a").doesNotContain("b");
+    }
+
+
+
+    @Test
+    public void testEntriesWithoutEveryFieldAreIgnored() throws IOException {
+        String fields = String.join("\t",
+            "x.Point", "1.0", "x.Extension", "x.Extension", "test", "x", "1.0", "", "1.0",
+            "false", "GLOBAL", "5", "true", ""
+        );
+        Path indexFile = folder.getRoot().toPath().resolve("META-INF/jext/index");
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, String.join("\n",
+            "# jext extension index v1",
+            fields.replace("x.", "incomplete."),
+            fields.replace("x.", "complete.") + "\t"
+        ));
+        try (var classLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() }, null)) {
+            assertThat(ExtensionIndex.read(classLoader).extensionPoints())
+                .containsExactly("complete.Point");
+        }
+    }
+
+}
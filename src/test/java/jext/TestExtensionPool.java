@@ -0,0 +1,151 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+public class TestExtensionPool {
+
+    private final ExtensionManager extensionManager = MockExternalLoader.managerWithoutExternalLoaders(
+        Thread.currentThread().getContextClassLoader()
+    );
+
+
+    @After
+    public void closeManager() {
+        extensionManager.close();
+    }
+
+
+    @Test
+    public void testReturnedInstanceIsBorrowedAgain() throws Exception {
+        PooledExtensionPoint instance;
+        try (var lease = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+            assertThat(lease.isPooled()).isTrue();
+            instance = lease.get();
+        }
+        try (var lease = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+            assertThat(lease.get()).isSameAs(instance);
+        }
+        var statistics = extensionManager.poolStatistics().get(PooledExtension.class.getName());
+        assertThat(statistics.created()).isEqualTo(1);
+        assertThat(statistics.borrowed()).isEqualTo(2);
+        assertThat(statistics.inUse()).isZero();
+        assertThat(statistics.idle()).isEqualTo(1);
+    }
+
+
+    @Test
+    public void testBorrowerWaitsUntilAnInstanceIsReturnedWhenThePoolIsFull() throws Exception {
+        extensionManager.withExtensionPool(PooledExtension.class, 0, 1);
+        var lease = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow();
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PooledExtensionPoint> waiting = executor.submit(() -> {
+                try (var other = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+                    return other.get();
+                }
+            });
+            assertThatThrownBy(() -> waiting.get(100, TimeUnit.MILLISECONDS))
+                .isInstanceOf(TimeoutException.class);
+            var instance = lease.get();
+            lease.close();
+            assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(instance);
+        } finally {
+            executor.shutdownNow();
+        }
+        var statistics = extensionManager.poolStatistics().get(PooledExtension.class.getName());
+        assertThat(statistics.created()).isEqualTo(1);
+        assertThat(statistics.waits()).isEqualTo(1);
+        assertThat(statistics.waitTime()).isPositive();
+        assertThat(statistics.utilization()).isZero();
+    }
+
+
+    @Test
+    public void testMinimumInstancesAreCreatedInAdvance() throws Exception {
+        extensionManager.withExtensionPool(PooledExtension.class, 3, 4);
+        int before = PooledExtension.instances.get();
+        try (var lease = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+            assertThat(lease.get()).isInstanceOf(PooledExtension.class);
+            assertThat(PooledExtension.instances.get() - before).isEqualTo(3);
+            var statistics = extensionManager.poolStatistics().get(PooledExtension.class.getName());
+            assertThat(statistics.inUse()).isEqualTo(1);
+            assertThat(statistics.idle()).isEqualTo(2);
+            assertThat(statistics.utilization()).isEqualTo(0.25);
+        }
+    }
+
+
+    @Test
+    public void testRegularLookupsOfPooledExtensionsCreateNewInstances() throws Exception {
+        var instance1 = extensionManager.getExtension(PooledExtensionPoint.class).orElseThrow();
+        var instance2 = extensionManager.getExtension(PooledExtensionPoint.class).orElseThrow();
+        assertThat(instance1).isNotSameAs(instance2);
+        assertThat(extensionManager.poolStatistics()).isEmpty();
+    }
+
+
+    @Test
+    public void testNonPooledExtensionsAreLeasedAsUsual() throws Exception {
+        var lease = extensionManager.borrowExtension(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().name("global")
+        ).orElseThrow();
+        assertThat(lease.isPooled()).isFalse();
+        assertThat(lease.get()).isSameAs(
+            extensionManager.getExtension(MyExtensionPoint.class, ExtensionQuery.any().name("global")).orElseThrow()
+        );
+        lease.close();
+        assertThatIllegalStateException().isThrownBy(lease::get);
+    }
+
+
+    @Test
+    public void testPoolsDoNotRetainTheBorrowingSession() throws Exception {
+        long collected = ExtensionManager.sessionStatistics().collected();
+        WeakReference<ExtensionManager> session = borrowFromSessionAndForget();
+        for (int i = 0; i < 100 && session.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertThat(session.get()).isNull();
+        for (int i = 0; i < 100 && ExtensionManager.sessionStatistics().collected() == collected; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(ExtensionManager.sessionStatistics().collected()).isGreaterThan(collected);
+        // the pool is still usable by the parent manager
+        try (var lease = extensionManager.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+            assertThat(lease.isPooled()).isTrue();
+        }
+    }
+
+
+    private WeakReference<ExtensionManager> borrowFromSessionAndForget() throws InterruptedException {
+        var session = extensionManager.newSession();
+        try (var lease = session.borrowExtension(PooledExtensionPoint.class).orElseThrow()) {
+            assertThat(lease.get()).isInstanceOf(PooledExtension.class);
+        }
+        return new WeakReference<>(session);
+    }
+
+
+    @Test
+    public void testInvalidPoolSizesAreRejected() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> extensionManager.withExtensionPool(PooledExtension.class, -1, 2));
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> extensionManager.withExtensionPool(PooledExtension.class, 0, 0));
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> extensionManager.withExtensionPool(PooledExtension.class, 3, 2));
+    }
+
+}
@@ -9,6 +9,9 @@ import org.junit.Test;
 import org.junit.BeforeClass;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -36,7 +39,11 @@ public class TestExtensionValidations {
         ).isTrue();
         // repeat twice (testing invalid extension cache)
         for (int i=0; i<=2; i++) {
-            assertThat(extensionManager.getExtensions(MyExtensionPoint.class))
+            assertThat(ExtensionManager.builtInExtensionLoader.load(
+                MyExtensionPoint.class,
+                extensionManager.classLoaders(),
+                "test"
+            ))
                 .extracting(Object::getClass)
                 .noneMatch(ExternallyManagedExtension.class::equals);
         }
@@ -58,4 +65,26 @@ public class TestExtensionValidations {
             ;
         }
     }
+
+
+    @Test
+    public void testExternalLoadersAreQueriedConcurrentlyWithParallelDiscovery() {
+        var tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            new Thread(task).start();
+        };
+        var parallelManager = new ExtensionManager().withParallelDiscovery(executor);
+        for (int i=0; i<=2; i++) {
+            assertThat(parallelManager.getExtensions(MyExtensionPoint.class))
+                .extracting(Object::getClass)
+                .anyMatch(ExternallyManagedExtension.class::equals)
+                .containsExactlyElementsOf(
+                    extensionManager.getExtensions(MyExtensionPoint.class)
+                        .map(Object::getClass)
+                        .collect(Collectors.toList())
+                );
+        }
+        assertThat(tasks.get()).isEqualTo(3);
+    }
 }
@@ -5,6 +5,7 @@ package jext;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 import org.junit.Test;
 
@@ -44,4 +45,48 @@ public class TestExtensionVersion {
         assertThat(v2_5.isCompatibleWith(v2_1)).isTrue();
     }
 
+
+    @Test
+    public void testVersionsAreParsed() {
+        assertVersion("1", 1, 0, "");
+        assertVersion("1.2", 1, 2, "");
+        assertVersion("1.2.3", 1, 2, "3");
+        assertVersion("1.2.3-SNAPSHOT", 1, 2, "3-SNAPSHOT");
+        assertVersion("1.2.3.4", 1, 2, "3");
+        assertVersion("1.2.", 1, 2, "");
+    }
+
+
+    @Test
+    public void testInvalidVersionsAreRejected() {
+        for (String version : new String[] { "", ".", "a", "1.a", ".1", "1..2" }) {
+            assertThatIllegalArgumentException()
+                .isThrownBy(() -> ExtensionVersion.of(version))
+                .withMessageStartingWith("Not valid version number " + version);
+        }
+    }
+
+
+    @Test
+    public void testVersionsAreInterned() {
+        assertThat(ExtensionVersion.of(new String("2.5.1")))
+            .isSameAs(ExtensionVersion.of(new String("2.5.1")));
+    }
+
+
+    @Test
+    public void testCompatibility() {
+        assertThat(ExtensionVersion.of("2.6").isCompatibleWith(ExtensionVersion.of("2.5"))).isTrue();
+        assertThat(ExtensionVersion.of("2.5").isCompatibleWith(ExtensionVersion.of("2.6"))).isFalse();
+        assertThat(ExtensionVersion.of("3.0").isCompatibleWith(ExtensionVersion.of("2.5"))).isFalse();
+    }
+
+
+    private static void assertVersion(String version, int major, int minor, String patch) {
+        var parsed = ExtensionVersion.of(version);
+        assertThat(parsed.major()).isEqualTo(major);
+        assertThat(parsed.minor()).isEqualTo(minor);
+        assertThat(parsed.patch()).isEqualTo(patch);
+    }
+
 }
@@ -0,0 +1,80 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+public class TestLazyExtensions {
+
+    private final ExtensionManager extensionManager = MockExternalLoader.managerWithoutExternalLoaders(
+        Thread.currentThread().getContextClassLoader()
+    );
+
+
+    @Test
+    public void testLazyExtensionsAreInstantiatedOnFirstInvocation() {
+        int english = GreetingEnglishExtension.instances.get();
+        int spanish = GreetingSpanishExtension.instances.get();
+        List<GreetingExtensionPoint> proxies = extensionManager
+            .getLazyExtensions(GreetingExtensionPoint.class)
+            .collect(Collectors.toList());
+        assertThat(proxies).hasSize(2);
+        assertThat(GreetingEnglishExtension.instances.get()).isEqualTo(english);
+        assertThat(GreetingSpanishExtension.instances.get()).isEqualTo(spanish);
+
+        var englishProxy = proxies.stream()
+            .filter(proxy -> extensionManager.getExtensionMetadata(proxy).name().equals("english"))
+            .findFirst()
+            .orElseThrow();
+        assertThat(englishProxy.greet()).isEqualTo("Hello");
+        assertThat(englishProxy.greet()).isEqualTo("Hello");
+        assertThat(GreetingEnglishExtension.instances.get()).isEqualTo(english + 1);
+        assertThat(GreetingSpanishExtension.instances.get()).isEqualTo(spanish);
+    }
+
+
+    @Test
+    public void testLazyExtensionsKeepThePriorityOrderAndTheQuery() {
+        List<String> expected = extensionManager.getExtensions(GreetingExtensionPoint.class)
+            .map(GreetingExtensionPoint::greet)
+            .collect(Collectors.toList());
+        assertThat(extensionManager.getLazyExtensions(GreetingExtensionPoint.class)
+            .map(GreetingExtensionPoint::greet)
+        ).containsExactlyElementsOf(expected);
+        assertThat(extensionManager.getLazyExtensions(
+            GreetingExtensionPoint.class,
+            ExtensionQuery.any().name("spanish")
+        ).map(GreetingExtensionPoint::greet)).containsExactly("Hola");
+    }
+
+
+    @Test
+    public void testObjectMethodsDoNotInstantiateTheExtension() {
+        int before = GreetingEnglishExtension.instances.get();
+        var proxy = extensionManager.getLazyExtensions(
+            GreetingExtensionPoint.class,
+            ExtensionQuery.any().name("english")
+        ).findFirst().orElseThrow();
+        Set<GreetingExtensionPoint> set = new HashSet<>(List.of(proxy));
+        assertThat(set).contains(proxy);
+        assertThat(proxy.toString()).contains("GreetingEnglishExtension");
+        assertThat(extensionManager.getExtensionMetadata(proxy).provider()).isEqualTo("test");
+        assertThat(GreetingEnglishExtension.instances.get()).isEqualTo(before);
+    }
+
+
+    @Test
+    public void testLazyExtensionsRequireAnInterfaceExtensionPoint() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> extensionManager.getLazyExtensions(String.class));
+    }
+
+}
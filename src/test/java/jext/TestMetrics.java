@@ -0,0 +1,124 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+
+import jext.internal.Metrics;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestMetrics {
+
+    /*
+     * Metrics implementations are discovered once, so the recording one is
+     * only visible from an isolated copy of the library; the rest of tests
+     * run with metrics disabled
+     */
+    private static URLClassLoader isolatedClassLoader;
+
+
+    @BeforeClass
+    public static void createIsolatedClassLoader() {
+        isolatedClassLoader = new IsolatedClassLoader(new URL[] {
+            TestMetrics.class.getResource("/metrics/"),
+            TestMetrics.class.getProtectionDomain().getCodeSource().getLocation(),
+            ExtensionManager.class.getProtectionDomain().getCodeSource().getLocation()
+        });
+    }
+
+
+    @AfterClass
+    public static void closeIsolatedClassLoader() throws Exception {
+        isolatedClassLoader.close();
+    }
+
+
+    @Test
+    public void testMetricsAreDisabledWithoutImplementations() throws Exception {
+        assertThat(Metrics.enabled()).isFalse();
+        assertThat((Boolean) runIsolated("metricsEnabled")).isTrue();
+    }
+
+
+    @Test
+    public void testLookupDiscoveryAndInstantiationAreMeasured() throws Exception {
+        List<String> events = runIsolated("lookupTwice");
+        assertThat(events).contains("sessions");
+        assertThat(events).containsSubsequence(
+            "miss CountedExtensionPoint",
+            "scan CountedExtensionPoint",
+            "lookup CountedExtensionPoint",
+            "instantiation CountedExtension",
+            "hit CountedExtensionPoint",
+            "lookup CountedExtensionPoint",
+            "instantiation CountedExtension"
+        );
+    }
+
+
+    @Test
+    public void testExternalLoadersAreMeasured() throws Exception {
+        List<String> events = runIsolated("useExternalLoaders");
+        assertThat(events).contains(
+            "external MockExternalLoader MyExtensionPoint",
+            "lookup MyExtensionPoint"
+        );
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T runIsolated(String scenario) throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(isolatedClassLoader);
+        try {
+            return (T) isolatedClassLoader.loadClass(MetricsScenarios.class.getName())
+                .getMethod(scenario)
+                .invoke(null);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+
+    /*
+     * Loads its own copy of the library and test classes, delegating the
+     * rest of classes to the regular class loader
+     */
+    private static final class IsolatedClassLoader extends URLClassLoader {
+
+        private IsolatedClassLoader(URL[] urls) {
+            super(urls, TestMetrics.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith("jext.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    try {
+                        loaded = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        loaded = super.loadClass(name, false);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestPluginDirectory {
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path pluginA;
+    private static Path pluginB;
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+
+
+    @BeforeClass
+    public static void buildPlugins() throws IOException {
+        Path classesA = folder.newFolder("classes-a").toPath();
+        Plugins.compile(classesA, "PluginA", "a", ExtensionScope.LOCAL);
+        pluginA = Plugins.jar(classesA, folder.getRoot().toPath().resolve("plugin-a.jar"));
+        Path classesB = folder.newFolder("classes-b").toPath();
+        Plugins.compile(classesB, "PluginB", "b", ExtensionScope.GLOBAL);
+        pluginB = Plugins.jar(classesB, folder.getRoot().toPath().resolve("plugin-b.jar"));
+    }
+
+
+    @Test
+    public void testPluginsAreLoadedAndUnloaded() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        var baseExtensions = extensionClasses();
+        try (var plugins = extensionManager.watchPluginDirectory(directory)) {
+            assertThat(plugins.plugins()).isEmpty();
+            assertThat(pluginExtension("a")).isEmpty();
+
+            deploy(pluginA, directory);
+            plugins.refresh();
+            assertThat(plugins.plugins()).containsExactly(directory.resolve("plugin-a.jar"));
+            assertThat(pluginExtension("a")).isPresent();
+            assertThat(extensionManager.classLoaders()).hasSize(2);
+
+            Files.delete(directory.resolve("plugin-a.jar"));
+            plugins.refresh();
+            assertThat(plugins.plugins()).isEmpty();
+            assertThat(pluginExtension("a")).isEmpty();
+            assertThat(extensionClasses()).containsExactlyElementsOf(baseExtensions);
+        }
+    }
+
+
+    @Test
+    public void testNewPluginsAreDetectedAutomatically() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        deploy(pluginA, directory);
+        try (var plugins = extensionManager.watchPluginDirectory(directory)) {
+            assertThat(pluginExtension("a")).isPresent();
+            deploy(pluginB, directory);
+            for (int i = 0; i < 200 && pluginExtension("b").isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            assertThat(pluginExtension("b")).isPresent();
+            assertThat(pluginExtension("a")).isPresent();
+            assertThat(plugins.plugins()).hasSize(2);
+        }
+        assertThat(pluginExtension("a")).isEmpty();
+        assertThat(pluginExtension("b")).isEmpty();
+        assertThat(extensionManager.classLoaders()).hasSize(1);
+    }
+
+
+    @Test
+    public void testInvalidJarsAreSkippedUntilTheyAreValid() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        Path invalid = directory.resolve("plugin-invalid.jar");
+        Files.writeString(invalid, "not a jar");
+        try (var plugins = extensionManager.watchPluginDirectory(directory)) {
+            assertThat(plugins.plugins()).isEmpty();
+            // the watcher keeps detecting changes
+            deploy(pluginB, directory);
+            for (int i = 0; i < 200 && pluginExtension("b").isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            assertThat(pluginExtension("b")).isPresent();
+            assertThat(plugins.plugins()).containsExactly(directory.resolve("plugin-b.jar"));
+            // the invalid jar is loaded once it is complete
+            Files.copy(pluginA, invalid, StandardCopyOption.REPLACE_EXISTING);
+            for (int i = 0; i < 200 && pluginExtension("a").isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            assertThat(pluginExtension("a")).isPresent();
+            assertThat(plugins.plugins()).hasSize(2);
+        }
+    }
+
+
+    private Optional<MyExtensionPoint> pluginExtension(String name) {
+        return extensionManager.getExtensionThatSatisfyMetadata(
+            MyExtensionPoint.class,
+            metadata -> metadata.provider().equals("plugin") && metadata.name().equals(name)
+        );
+    }
+
+
+    private List<Class<?>> extensionClasses() {
+        return extensionManager.getExtensions(MyExtensionPoint.class)
+            .map(Object::getClass)
+            .collect(Collectors.toList());
+    }
+
+
+    private static void deploy(Path plugin, Path directory) throws IOException {
+        // copy under a temporary name, so the watcher never sees an incomplete jar
+        Path temporary = Files.copy(plugin, directory.resolve(plugin.getFileName() + ".tmp"));
+        Files.move(temporary, directory.resolve(plugin.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import jext.internal.PluginClassLoader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+public class TestPreload {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+
+
+    @Test
+    public void testPreloadInstantiatesGlobalExtensions() {
+        var report = extensionManager.preload(MyExtensionPoint.class, MyExtensionPointV2_5.class);
+        assertThat(report.extensionPoints())
+            .containsOnlyKeys(MyExtensionPoint.class, MyExtensionPointV2_5.class);
+        assertThat(report.extensions())
+            .containsKeys(MyExtensionGlobal.class.getName(), MyExtensionV2_5.class.getName())
+            .doesNotContainKeys(MyExtensionLocal.class.getName(), MyExtensionSession.class.getName());
+        assertThat(report.failedExtensions()).isEmpty();
+        assertThat(report.totalTime()).isPositive();
+        // the preloaded instance is the one returned afterwards
+        assertThat(extensionManager.getExtension(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().name("global")
+        )).containsInstanceOf(MyExtensionGlobal.class);
+    }
+
+
+    @Test
+    public void testPreloadEveryIndexedExtensionPoint() throws IOException {
+        // an isolated plugin, so no other indexed extension is initialized
+        Path pluginFolder = folder.newFolder("plugin").toPath();
+        Plugins.compile(pluginFolder, "IndexedPlugin", "indexed", ExtensionScope.GLOBAL, true);
+        var pool = new ForkJoinPool(2);
+        try (var classLoader = new PluginClassLoader(pluginFolder, getClass().getClassLoader())) {
+            var report = new ExtensionManager(classLoader).preloadAll(pool);
+            assertThat(report.extensionPoints()).containsOnlyKeys(MyExtensionPoint.class);
+            assertThat(report.extensions()).containsOnlyKeys("plugin.IndexedPlugin");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -4,9 +4,21 @@
 package jext;
 
 
-import org.junit.Test;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
 
+import jext.internal.ExtensionDescriptor;
+import jext.internal.InternalExtensionLoader;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -14,6 +26,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestScope {
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private final ExtensionManager extensionManager = new ExtensionManager();
 
 
@@ -26,6 +41,46 @@ public class TestScope {
         assertThat(call2).isNotSameAs(call3);
     }
 
+    @Test
+    public void testLocalExtensionIsOnlyInstantiatedWhenRequested() {
+        int before = CountedExtension.instances.get();
+        for (int i = 0; i < 5; i++) {
+            assertThat(extensionManager.getExtension(CountedExtensionPoint.class)).isPresent();
+        }
+        assertThat(CountedExtension.instances.get() - before).isEqualTo(5);
+    }
+
+    @Test
+    public void testExtensionIsInstantiatedByGeneratedFactory() {
+        assertThat(extensionManager.getExtension(CountedExtensionPoint.class)).isPresent();
+        assertThat(CountedExtension.creator).isEqualTo("jext.CountedExtension_JextFactory");
+    }
+
+    @Test
+    public void testExtensionWithoutGeneratedFactoryIsInstantiatedByCachedConstructor() {
+        var loader = new InternalExtensionLoader();
+        var descriptor = ExtensionDescriptor.of(CountedExtension.class);
+        var call1 = loader.instantiate(descriptor, CountedExtensionPoint.class, "test").orElseThrow();
+        var call2 = loader.instantiate(descriptor, CountedExtensionPoint.class, "test").orElseThrow();
+        assertThat(call1).isNotSameAs(call2);
+        assertThat(CountedExtension.creator)
+            .isNotEqualTo("jext.CountedExtension_JextFactory")
+            .doesNotStartWith("jdk.internal.reflect");
+    }
+
+    @Test
+    public void testMetadataLookupsDoNotRetainInstances() throws InterruptedException {
+        var local = lookupMetadataAndForget(extensionManager, ExtensionScope.LOCAL);
+        awaitCollected(local);
+        assertThat(local.get()).isNull();
+
+        var session = extensionManager.newSession();
+        var sessionInstance = lookupMetadataAndForget(session, ExtensionScope.SESSION);
+        session.close();
+        awaitCollected(sessionInstance);
+        assertThat(sessionInstance.get()).isNull();
+    }
+
     @Test
     public void testGlobalExtensionAlwaysGetTheSameInstance() {
         var call1 = getExtension(extensionManager,ExtensionScope.GLOBAL).orElseThrow();
@@ -59,10 +114,143 @@ public class TestScope {
 
 
 
+    @Test
+    public void testSessionsShareTheResolvedExtensions() throws IOException {
+        Path pluginFolder = folder.newFolder("plugin").toPath();
+        Plugins.compile(pluginFolder, "FirstExtension", "first", ExtensionScope.LOCAL);
+        try (var classLoader = new URLClassLoader(
+            new URL[] { pluginFolder.toUri().toURL() },
+            getClass().getClassLoader()
+        )) {
+            var manager = new ExtensionManager(classLoader);
+            assertThat(pluginExtensionNames(manager)).containsExactly("first");
+            // new extensions are not discovered until the extensions are invalidated
+            Plugins.compile(pluginFolder, "SecondExtension", "second", ExtensionScope.LOCAL);
+            var session = manager.newSession();
+            assertThat(pluginExtensionNames(session)).containsExactly("first");
+            session.clear();
+            assertThat(pluginExtensionNames(manager)).containsExactly("first");
+            session.invalidateAll();
+            assertThat(pluginExtensionNames(manager)).containsExactly("first", "second");
+        }
+    }
+
+
+    @Test
+    public void testClearingASessionOnlyReleasesItsOwnInstances() {
+        var session = extensionManager.newSession();
+        var parentInstance = getExtension(extensionManager, ExtensionScope.SESSION).orElseThrow();
+        var handle = session.getExtensionHandle(MyExtensionPoint.class, ExtensionQuery.any().name("session"));
+        var sessionInstance = handle.get().orElseThrow();
+        assertThat(sessionInstance).isNotSameAs(parentInstance);
+        session.clear();
+        assertThat(handle.get()).get().isNotSameAs(sessionInstance);
+        assertThat(getExtension(extensionManager, ExtensionScope.SESSION)).containsSame(parentInstance);
+    }
+
+
+    @Test
+    public void testThreadExtensionGetTheSameInstanceWithinTheSameThread() throws Exception {
+        var call1 = threadExtension(extensionManager);
+        var call2 = threadExtension(extensionManager);
+        var otherThread = new AtomicReference<ThreadScopedExtensionPoint>();
+        // keep the other thread alive so its instance cannot be reused
+        var latch = new CountDownLatch(1);
+        var thread = new Thread(() -> {
+            otherThread.set(threadExtension(extensionManager));
+            awaitQuietly(latch);
+        });
+        thread.start();
+        while (otherThread.get() == null) {
+            Thread.sleep(5);
+        }
+        assertThat(call1).isSameAs(call2).isNotSameAs(otherThread.get());
+        assertThat(threadExtension(extensionManager.newSession())).isNotSameAs(call1);
+        latch.countDown();
+        thread.join();
+    }
+
+
+    @Test
+    public void testThreadExtensionInstancesOfTerminatedThreadsAreReused() throws Exception {
+        var session = extensionManager.newSession();
+        int before = ThreadScopedExtension.instances.get();
+        Set<ThreadScopedExtensionPoint> used = ConcurrentHashMap.newKeySet();
+        for (int batch = 0; batch < 100; batch++) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread thread = new Thread(() -> used.add(threadExtension(session)));
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        // 400 threads, but no more than 4 alive at the same time
+        assertThat(used).hasSizeLessThanOrEqualTo(4);
+        assertThat(ThreadScopedExtension.instances.get() - before).isEqualTo(used.size());
+        session.close();
+    }
+
+
+    @Test
+    public void testThreadExtensionInstancesAreReleasedWhenCleared() {
+        var session = extensionManager.newSession();
+        var instance = threadExtension(session);
+        assertThat(threadExtension(session)).isSameAs(instance);
+        session.clear();
+        assertThat(threadExtension(session)).isNotSameAs(instance);
+        session.close();
+    }
+
+
+    private static ThreadScopedExtensionPoint threadExtension(ExtensionManager manager) {
+        return manager.getExtension(ThreadScopedExtensionPoint.class).orElseThrow();
+    }
+
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static List<String> pluginExtensionNames(ExtensionManager manager) {
+        return manager.getExtensionMetadata(MyExtensionPoint.class)
+            .filter(metadata -> metadata.provider().equals("plugin"))
+            .map(Extension::name)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+
     private Optional<MyExtensionPoint> getExtension(ExtensionManager extMgr, ExtensionScope scope) {
         return extMgr.getExtensionsThatSatisfyMetadata(
             MyExtensionPoint.class,
             metadata->metadata.scope()==scope
         ).findAny();
     }
+
+
+    private WeakReference<MyExtensionPoint> lookupMetadataAndForget(
+        ExtensionManager manager,
+        ExtensionScope scope
+    ) {
+        var extension = getExtension(manager, scope).orElseThrow();
+        assertThat(manager.getExtensionMetadata(extension))
+            .isEqualTo(extension.getClass().getAnnotation(Extension.class));
+        return new WeakReference<>(extension);
+    }
+
+
+    private static void awaitCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+
+public class TestSessions {
+
+    private static final ExtensionQuery SESSION_EXTENSION = ExtensionQuery.any().name("session");
+
+    private final ExtensionManager extensionManager = new ExtensionManager();
+
+
+    @Test
+    public void testClosedSessionReleasesItsInstances() throws Exception {
+        long closed = ExtensionManager.sessionStatistics().closed();
+        WeakReference<MyExtensionPoint> instance;
+        try (var session = extensionManager.newSession()) {
+            instance = new WeakReference<>(
+                session.getExtension(MyExtensionPoint.class, SESSION_EXTENSION).orElseThrow()
+            );
+        }
+        assertThat(ExtensionManager.sessionStatistics().closed()).isEqualTo(closed + 1);
+        assertThat(awaitCollected(instance)).isTrue();
+    }
+
+
+    @Test
+    public void testUnreachableSessionReleasesItsInstances() throws Exception {
+        long collected = ExtensionManager.sessionStatistics().collected();
+        WeakReference<MyExtensionPoint> instance = useSessionAndForget();
+        assertThat(awaitCollected(instance)).isTrue();
+        assertThat(ExtensionManager.sessionStatistics().collected()).isGreaterThan(collected);
+    }
+
+
+    @Test
+    public void testIdleSessionInstancesAreReleased() throws Exception {
+        var manager = new ExtensionManager().withSessionIdleTimeout(Duration.ofMillis(50));
+        try (var session = manager.newSession()) {
+            long expired = ExtensionManager.sessionStatistics().expired();
+            var instance = session.getExtension(MyExtensionPoint.class, SESSION_EXTENSION).orElseThrow();
+            // both the manager and the session are idle
+            for (int i = 0; i < 200 && ExtensionManager.sessionStatistics().expired() < expired + 2; i++) {
+                Thread.sleep(20);
+            }
+            assertThat(ExtensionManager.sessionStatistics().expired()).isGreaterThanOrEqualTo(expired + 2);
+            assertThat(session.getExtension(MyExtensionPoint.class, SESSION_EXTENSION))
+                .get().isNotSameAs(instance);
+        } finally {
+            manager.close();
+        }
+    }
+
+
+    @Test
+    public void testNegativeIdleTimeoutIsRejected() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> extensionManager.withSessionIdleTimeout(Duration.ofSeconds(-1)));
+    }
+
+
+    private WeakReference<MyExtensionPoint> useSessionAndForget() {
+        var session = extensionManager.newSession();
+        // neither cleared nor closed
+        return new WeakReference<>(
+            session.getExtension(MyExtensionPoint.class, SESSION_EXTENSION).orElseThrow()
+        );
+    }
+
+
+    private static boolean awaitCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return reference.get() == null;
+    }
+
+}
@@ -6,9 +6,17 @@ package jext;
 
 import org.junit.*;
 
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
 public class TestSortAndFiltering {
 
@@ -40,6 +48,18 @@ public class TestSortAndFiltering {
     }
 
 
+    @Test
+    public void testPrecomputedOrderIsUsedWithoutExternalLoaders() {
+        var manager = MockExternalLoader.managerWithoutExternalLoaders(
+            Thread.currentThread().getContextClassLoader()
+        );
+        assertThat(manager.getExtension(MyExtensionPointV2_5.class))
+            .containsInstanceOf(MyExtensionV2_5.class);
+        assertThat(manager.getExtensions(MyExtensionPointV2_5.class).map(Object::getClass))
+            .containsExactly(MyExtensionV2_5.class, MyExtensionV2_6.class);
+    }
+
+
     @Test
     public void testGetExtensionByMetadata() {
         var extension = extensionManager.getExtensionThatSatisfyMetadata(
@@ -51,4 +71,117 @@ public class TestSortAndFiltering {
         assertThat(extension).containsInstanceOf(MyExtensionLocal.class);
     }
 
+
+    @Test
+    public void testGetExtensionByQuery() {
+        var query = ExtensionQuery.any().provider("TEST").name("Local").version("1.0");
+        assertThat(extensionManager.getExtension(MyExtensionPoint.class, query))
+            .containsInstanceOf(MyExtensionLocal.class);
+        assertThat(extensionManager.getExtension(MyExtensionPoint.class, query.version("2.0")))
+            .isEmpty();
+        assertThat(extensionManager.getExtensions(
+            MyExtensionPoint.class,
+            ExtensionQuery.any().scope(ExtensionScope.SESSION)
+        ).map(Object::getClass)).containsExactly(MyExtensionSession.class);
+        assertThat(extensionManager.getExtensions(
+            MyExtensionPointV2_5.class,
+            ExtensionQuery.any().priorityBetween(2, 10)
+        ).map(Object::getClass)).containsExactly(MyExtensionV2_6.class);
+    }
+
+
+    @Test
+    public void testNullVersionDoesNotMatchAnyExtension() {
+        assertThat(extensionManager.getExtensionThatSatisfyMetadata(MyExtensionPoint.class, "test", "global", null))
+            .isEmpty();
+        assertThatNullPointerException().isThrownBy(() -> ExtensionQuery.any().version(null));
+        assertThatNullPointerException().isThrownBy(() -> ExtensionQuery.any().versionRange("1.0", null));
+    }
+
+
+    @Test
+    public void testExtensionsWithInvalidVersionDoNotMatchVersionCriteria() {
+        Extension valid = MyExtensionGlobal.class.getAnnotation(Extension.class);
+        Extension invalid = (Extension) Proxy.newProxyInstance(
+            Extension.class.getClassLoader(),
+            new Class<?>[] { Extension.class },
+            (proxy, method, args) -> method.getName().equals("version") ? "invalid" : method.invoke(valid, args)
+        );
+        var query = ExtensionQuery.any().provider("test").version("1.0");
+        assertThat(query.matches(valid)).isTrue();
+        assertThat(query.matches(invalid)).isFalse();
+        assertThat(ExtensionQuery.any().provider("test").matches(invalid)).isTrue();
+    }
+
+
+    @Test
+    public void testNullProviderOrNameDoesNotMatchAnyExtension() {
+        assertThat(extensionManager.getExtensionThatSatisfyMetadata(MyExtensionPoint.class, null, "global", "1.0"))
+            .isEmpty();
+        assertThat(extensionManager.getExtensionThatSatisfyMetadata(MyExtensionPoint.class, "test", null, "1.0"))
+            .isEmpty();
+        assertThat(extensionManager.getExtensionThatSatisfyMetadata(MyExtensionPoint.class, "test", "global", "1.0"))
+            .containsInstanceOf(MyExtensionGlobal.class);
+    }
+
+
+    @Test
+    public void testQueryGetTheSameExtensionsThanMetadataCondition() {
+        var manager = MockExternalLoader.managerWithoutExternalLoaders(
+            Thread.currentThread().getContextClassLoader()
+        );
+        var query = ExtensionQuery.any().provider("test").versionRange("1.0", "2.0");
+        for (int i = 0; i < 2; i++) {
+            // the second time the cached result is used
+            assertThat(manager.getExtensions(MyExtensionPoint.class, query).map(Object::getClass))
+                .containsExactlyElementsOf(
+                    manager.getExtensionsThatSatisfyMetadata(MyExtensionPoint.class, query::matches)
+                        .map(Object::getClass)
+                        .collect(Collectors.toList())
+                )
+                .isNotEmpty();
+        }
+    }
+
+
+    @Test
+    public void testExtensionsAreResolvedAgainAfterInvalidation() {
+        var before = extensionManager.getExtensions(MyExtensionPointV2_5.class)
+            .map(Object::getClass);
+        extensionManager.invalidate(MyExtensionPointV2_5.class);
+        var after = extensionManager.getExtensions(MyExtensionPointV2_5.class)
+            .map(Object::getClass);
+        assertThat(after).containsExactlyElementsOf(before.collect(Collectors.toList()));
+        extensionManager.invalidateAll();
+        assertThat(extensionManager.getExtension(MyExtensionPointV2_5.class))
+            .containsInstanceOf(MyExtensionV2_5.class);
+    }
+
+
+    @Test
+    public void testParallelDiscoveryGetTheSameExtensionsThanSequentialDiscovery() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader[] classLoaders = {
+            new URLClassLoader(new URL[0], classLoader),
+            classLoader,
+            new URLClassLoader(new URL[0], classLoader)
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            var sequential = new ExtensionManager(classLoaders);
+            var parallel = new ExtensionManager(classLoaders).withParallelDiscovery(executor);
+            for (Class<?> extensionPoint : List.of(MyExtensionPoint.class, MyExtensionPointV2_5.class)) {
+                assertThat(parallel.getExtensions(extensionPoint).map(Object::getClass))
+                    .isNotEmpty()
+                    .containsExactlyElementsOf(
+                        sequential.getExtensions(extensionPoint)
+                            .map(Object::getClass)
+                            .collect(Collectors.toList())
+                    );
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,22 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Extension(
+    provider = "test",
+    name = "thread",
+    version = "1.0.0",
+    scope = ExtensionScope.THREAD
+)
+public class ThreadScopedExtension implements ThreadScopedExtensionPoint {
+
+    static final AtomicInteger instances = new AtomicInteger();
+
+    public ThreadScopedExtension() {
+        instances.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * @author Luis Iñesta Gelabert - linesta@iti.es | luiinge@gmail.com
+ */
+package jext;
+
+
+import java.util.concurrent.TimeUnit;
+
+import jext.internal.ExtensionVersion;
+
+
+/**
+ * Simple microbenchmark of version parsing and matching, measuring the
+ * average time per operation after a warm-up phase. It is not part of the
+ * test suite; run it with:
+ * <pre>
+ * java -cp target/classes:target/test-classes jext.VersionBenchmark
+ * </pre>
+ */
+public class VersionBenchmark {
+
+    private static final String[] VERSIONS = {
+        "1.0", "1.0.0", "2.5", "2.6.1", "3.14.15", "10.0.0-SNAPSHOT", "1.2.3.4"
+    };
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int OPERATIONS = 1_000_000;
+
+    private static volatile Object sink;
+
+
+    public static void main(String[] args) {
+        // external loaders are not relevant here, and would dominate the measures
+        var extensionManager = MockExternalLoader.managerWithoutExternalLoaders(
+            VersionBenchmark.class.getClassLoader()
+        );
+        var query = ExtensionQuery.any().provider("test").name("local").version("1.0");
+        run("parse (interned)", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink = ExtensionVersion.of(VERSIONS[i % VERSIONS.length]);
+            }
+        });
+        run("parse and match", () -> {
+            var expected = ExtensionVersion.of("2.5");
+            int compatible = 0;
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (ExtensionVersion.of(VERSIONS[i % VERSIONS.length]).isCompatibleWith(expected)) {
+                    compatible++;
+                }
+            }
+            sink = compatible;
+        });
+        run("query (cached)", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink = extensionManager.getExtension(MyExtensionPoint.class, query);
+            }
+        });
+        run("metadata predicate", () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink = extensionManager.getExtensionThatSatisfyMetadata(
+                    MyExtensionPoint.class,
+                    query::matches
+                );
+            }
+        });
+    }
+
+
+    private static void run(String name, Runnable benchmark) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmark.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            benchmark.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf(
+            "%-20s %10.1f ns/op (%d ms)%n",
+            name,
+            (double) elapsed / ((long) ITERATIONS * OPERATIONS),
+            TimeUnit.NANOSECONDS.toMillis(elapsed)
+        );
+    }
+
+}